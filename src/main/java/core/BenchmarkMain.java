@@ -0,0 +1,955 @@
+package core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.Book;
+import domain.Posting;
+import domain.SearchIndexData;
+import domain.SearchResult;
+import features.search.HeapSearchIndex;
+import features.search.IndexBuilder;
+import features.search.PackedSearchIndex;
+import features.search.PostingStore;
+import features.search.PostingsCursor;
+import features.search.QueryBudget;
+import features.search.QueryProcessor;
+import features.search.ReRanker;
+import features.search.SearchExecutor;
+import features.search.SearchIndex;
+import features.search.Similarity;
+import features.search.Suggester;
+import storage.BookLoader;
+import storage.PostingsCodec;
+import utils.StopWordLoader;
+import utils.TextProcessor;
+import utils.TfIdfCalculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Offline measurements of the search internals, run from the project root like IndexerMain.
+ *
+ * Usage: BenchmarkMain <postings|heap|latency|load|topk|pruning|boolean|concurrent|budget|fuzzy|similarity|batch|simd|rerank> [scale]
+ *   scale > 1 indexes a synthetic corpus: the bundled catalog repeated scale times with shifted ids.
+ *   simd needs a -Psimd build and java --add-modules jdk.incubator.vector (add -XX:UseAVX=2 to measure AVX2 on an AVX-512 machine).
+ */
+public class BenchmarkMain {
+
+    private static final String STOPWORD_RES = "/data/stopword.txt";
+    private static final String BOOK_RES = "/data/book.json";
+    private static final String INDEX_RES = "/data/index_data.json";
+
+    // Each measurement repeats its loop for at least this long
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    // Results the GUI shows per page
+    private static final int PAGE_SIZE = 12;
+
+    // Queries matching a large share of the catalog
+    private static final String[] BROAD_QUERIES = {"programming", "java", "python", "learn programming with python"};
+
+    private static long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "postings";
+        int scale = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        System.out.println("--- DevShelf Benchmark: " + mode + " (scale " + scale + ") ---");
+        switch (mode) {
+            case "postings": postings(buildIndex(scale)); break;
+            case "heap": heap(indexJson(scale)); break;
+            case "latency": latency(buildIndex(scale)); break;
+            case "load": load(buildIndex(scale)); break;
+            case "topk": topK(scale); break;
+            case "pruning": pruning(scale); break;
+            case "boolean": booleanQueries(scale); break;
+            case "concurrent": concurrent(scale); break;
+            case "budget": budget(scale); break;
+            case "fuzzy": fuzzy(scale); break;
+            case "similarity": similarity(scale); break;
+            case "batch": batch(scale); break;
+            case "simd": simd(scale); break;
+            case "rerank": reRank(scale); break;
+            default: System.err.println("❌ Unknown benchmark: " + mode);
+        }
+    }
+
+    // --- Corpus ---
+
+    static List<Book> corpus(int scale) {
+        List<Book> base = new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES);
+        if (scale <= 1) return base;
+
+        int idStride = base.stream().mapToInt(Book::getBookId).max().orElse(0) + 1;
+        List<Book> books = new ArrayList<>(base.size() * scale);
+        for (int copy = 0; copy < scale; copy++) {
+            for (Book b : base) {
+                books.add(new Book(b.getBookId() + copy * idStride, b.getTitle(), b.getAuthor(),
+                        b.getDescription(), b.getProgLang(), b.getCategory(), b.getTag(),
+                        b.getRating(), b.getCoverUrl(), b.getDownLink()));
+            }
+        }
+        return books;
+    }
+
+    static SearchIndexData buildIndex(int scale) {
+        Set<String> stopWords = StopWordLoader.loadStopWords(STOPWORD_RES);
+        List<Book> books = corpus(scale);
+        IndexBuilder indexer = new IndexBuilder(new TextProcessor(stopWords));
+        for (Book book : books) {
+            indexer.indexDocument(book);
+        }
+        TfIdfCalculator calculator = new TfIdfCalculator();
+        calculator.calculateIdf(indexer.getInvertedIndex(), books.size());
+        calculator.calculateTfIdf(indexer.getInvertedIndex());
+        System.out.println("Corpus: " + books.size() + " books, " + indexer.getInvertedIndex().size() + " terms.");
+        return new SearchIndexData(indexer.getInvertedIndex(), calculator.getTfIdfVectors(), calculator.getIdfScores(),
+                calculator.getDocNorms(), calculator.getDocLengths());
+    }
+
+    // The bundled JSON index, or a synthetic one serialized the same way IndexerMain does
+    static byte[] indexJson(int scale) throws Exception {
+        if (scale <= 1) {
+            try (InputStream in = BenchmarkMain.class.getResourceAsStream(INDEX_RES)) {
+                return in.readAllBytes();
+            }
+        }
+        return new ObjectMapper().writeValueAsBytes(buildIndex(scale));
+    }
+
+    // --- postings: compressed codec vs List<Posting> ---
+
+    private static void postings(SearchIndexData data) throws Exception {
+        Map<String, List<Posting>> invertedIndex = data.getInvertedIndex();
+
+        long postingCount = 0, positionCount = 0;
+        for (List<Posting> postings : invertedIndex.values()) {
+            postingCount += postings.size();
+            for (Posting p : postings) positionCount += p.getFreq();
+        }
+
+        // Sizes
+        long jsonBytes = new ObjectMapper().writeValueAsBytes(invertedIndex).length;
+        long rawIntBytes = (2 * postingCount + positionCount) * Integer.BYTES;
+        List<ByteBuffer> encoded = new ArrayList<>();
+        List<Integer> docFreqs = new ArrayList<>();
+        long compressedBytes = 0;
+        for (List<Posting> postings : invertedIndex.values()) {
+            byte[] bytes = PostingsCodec.encode(postings);
+            compressedBytes += bytes.length;
+            encoded.add(ByteBuffer.wrap(bytes));
+            docFreqs.add(postings.size());
+        }
+
+        System.out.println("Postings: " + postingCount + ", positions: " + positionCount);
+        System.out.printf("  JSON postings          : %,12d bytes%n", jsonBytes);
+        System.out.printf("  Fixed int32 (format v1): %,12d bytes%n", rawIntBytes);
+        System.out.printf("  Delta + varint (v2)    : %,12d bytes  (%.1f%% of int32, %.2f bytes/posting incl. positions)%n",
+                compressedBytes, 100.0 * compressedBytes / rawIntBytes, (double) compressedBytes / postingCount);
+
+        // Decode throughput
+        List<List<Posting>> lists = new ArrayList<>(invertedIndex.values());
+        report("List<Posting> docs+freqs", postingCount, () -> {
+            long sum = 0;
+            for (List<Posting> postings : lists) {
+                for (Posting p : postings) sum += p.getDocId() + p.getFreq();
+            }
+            return sum;
+        });
+        report("Codec docs+freqs", postingCount, () -> {
+            long sum = 0;
+            for (int i = 0; i < encoded.size(); i++) {
+                PostingsCursor cursor = PostingsCodec.decoder(encoded.get(i), 0, docFreqs.get(i));
+                while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) sum += cursor.docId() + cursor.freq();
+            }
+            return sum;
+        });
+        report("List<Posting> with positions", postingCount, () -> {
+            long sum = 0;
+            for (List<Posting> postings : lists) {
+                for (Posting p : postings) {
+                    sum += p.getDocId() + p.getFreq();
+                    for (int position : p.getPositions()) sum += position;
+                }
+            }
+            return sum;
+        });
+        report("Codec with positions", postingCount, () -> {
+            long sum = 0;
+            for (int i = 0; i < encoded.size(); i++) {
+                PostingsCursor cursor = PostingsCodec.decoder(encoded.get(i), 0, docFreqs.get(i));
+                while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                    sum += cursor.docId() + cursor.freq();
+                    for (int j = 0; j < cursor.freq(); j++) sum += cursor.nextPosition();
+                }
+            }
+            return sum;
+        });
+    }
+
+    // --- heap: boxed SearchIndexData vs PackedSearchIndex ---
+
+    private static void heap(byte[] json) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        System.out.printf("JSON index: %,d bytes%n", json.length);
+
+        System.out.println("Retained heap:");
+        long boxed = retainedBytes(() -> mapper.readValue(json, SearchIndexData.class));
+        long packed = retainedBytes(() -> mapper.readValue(json, PackedSearchIndex.class));
+        long boxedPostings = retainedBytes(() -> mapper.readValue(json, SearchIndexData.class).getInvertedIndex());
+        long packedPostings = retainedBytes(() -> mapper.readValue(json, PackedSearchIndex.class).getPostingStore());
+        System.out.printf("  %-30s %,14d bytes%n", "SearchIndexData (boxed)", boxed);
+        System.out.printf("  %-30s %,14d bytes  (%.1f%%)%n", "PackedSearchIndex", packed, 100.0 * packed / boxed);
+        System.out.printf("  %-30s %,14d bytes%n", "  postings as List<Posting>", boxedPostings);
+        System.out.printf("  %-30s %,14d bytes  (%.1f%%)%n", "  postings as PostingStore", packedPostings, 100.0 * packedPostings / boxedPostings);
+
+        System.out.println("Allocated while loading:");
+        System.out.printf("  %-30s %,14d bytes%n", "SearchIndexData (boxed)",
+                allocatedBytes(() -> mapper.readValue(json, SearchIndexData.class)));
+        System.out.printf("  %-30s %,14d bytes%n", "PackedSearchIndex",
+                allocatedBytes(() -> mapper.readValue(json, PackedSearchIndex.class)));
+
+        // A full scan of every posting list, the work findMatchingDocuments does per query term
+        SearchIndex heapIndex = new HeapSearchIndex(mapper.readValue(json, SearchIndexData.class));
+        SearchIndex packedIndex = mapper.readValue(json, PackedSearchIndex.class);
+        PostingStore store = ((PackedSearchIndex) packedIndex).getPostingStore();
+        List<String> terms = new ArrayList<>(store.termCount());
+        long postingCount = 0;
+        for (int termId = 0; termId < store.termCount(); termId++) {
+            terms.add(store.term(termId));
+            postingCount += store.docFreq(termId);
+        }
+        System.out.println("Allocated per full postings scan (" + terms.size() + " cursors):");
+        for (SearchIndex index : List.of(heapIndex, packedIndex)) {
+            scan(index, terms);
+            System.out.printf("  %-30s %,14d bytes%n", index.getClass().getSimpleName(),
+                    allocatedBytes(() -> scan(index, terms)));
+        }
+        // Warm both cursor types first, so neither measurement runs on a single-type profile
+        for (int i = 0; i < 2000; i++) {
+            scan(heapIndex, terms);
+            scan(packedIndex, terms);
+        }
+        for (SearchIndex index : List.of(heapIndex, packedIndex)) {
+            report(index.getClass().getSimpleName() + " scan", postingCount, () -> scan(index, terms));
+        }
+    }
+
+    private static long scan(SearchIndex index, List<String> terms) {
+        long sum = 0;
+        for (String term : terms) {
+            PostingsCursor cursor = index.postings(term);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                sum += cursor.docId() + cursor.freq();
+                for (int j = 0; j < cursor.freq(); j++) sum += cursor.nextPosition();
+            }
+        }
+        return sum;
+    }
+
+    // --- latency: per-query norm rescans vs persisted norms ---
+
+    private static void latency(SearchIndexData data) throws Exception {
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        SearchIndex persisted = new HeapSearchIndex(data);
+        QueryProcessor before = new QueryProcessor(textProcessor, new RescanningIndex(persisted, data.getTfIdfVectors()));
+        QueryProcessor after = new QueryProcessor(textProcessor, persisted);
+
+        // Compile both paths before the first measurement
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (String query : BROAD_QUERIES) blackhole += before.search(query).size() + after.search(query).size();
+        }
+
+        for (String query : BROAD_QUERIES) {
+            System.out.println("\"" + query + "\" (" + after.search(query).size() + " matches)");
+            double beforeNanos = nanosPerRun(() -> before.search(query).size());
+            double afterNanos = nanosPerRun(() -> after.search(query).size());
+            System.out.printf("  %-30s %10.1f us/query%n", "norm rescanned per query", beforeNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "persisted norm", afterNanos / 1e3, beforeNanos / afterNanos);
+        }
+    }
+
+    // How docNorm worked before norms were persisted: a full pass over the document's vector per call
+    private static class RescanningIndex implements SearchIndex {
+        private final SearchIndex delegate;
+        private final Map<Integer, Map<String, Double>> tfIdfVectors;
+
+        RescanningIndex(SearchIndex delegate, Map<Integer, Map<String, Double>> tfIdfVectors) {
+            this.delegate = delegate;
+            this.tfIdfVectors = tfIdfVectors;
+        }
+
+        @Override public int docCount() { return delegate.docCount(); }
+        @Override public int termCount() { return delegate.termCount(); }
+        @Override public int termOrdinal(String term) { return delegate.termOrdinal(term); }
+        @Override public String term(int termOrdinal) { return delegate.term(termOrdinal); }
+        @Override public int ceilingTermOrdinal(String term) { return delegate.ceilingTermOrdinal(term); }
+        @Override public double idf(int termOrdinal) { return delegate.idf(termOrdinal); }
+        @Override public double maxScore(int termOrdinal) { return delegate.maxScore(termOrdinal); }
+        @Override public PostingsCursor postings(int termOrdinal) { return delegate.postings(termOrdinal); }
+        @Override public int docOrdinal(int docId) { return delegate.docOrdinal(docId); }
+        @Override public int docId(int docOrdinal) { return delegate.docId(docOrdinal); }
+        @Override public int docLength(int docId) { return delegate.docLength(docId); }
+        @Override public double averageDocLength() { return delegate.averageDocLength(); }
+        @Override public Map<String, Double> docVector(int docId) { return delegate.docVector(docId); }
+        @Override public SearchIndexData toIndexData() { return delegate.toIndexData(); }
+
+        @Override
+        public double docNorm(int docId) {
+            Map<String, Double> docVector = tfIdfVectors.get(docId);
+            return docVector == null ? 0.0 : TfIdfCalculator.norm(docVector);
+        }
+    }
+
+    // --- topk: full sort vs bounded heap ---
+
+    private static void topK(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        Map<Integer, Book> bookMap = new HashMap<>();
+        for (Book book : corpus(scale)) bookMap.put(book.getBookId(), book);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+        ReRanker reRanker = new ReRanker(bookMap, "");
+
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (String query : BROAD_QUERIES) {
+                List<SearchResult> all = queryProcessor.search(query);
+                blackhole += queryProcessor.search(query, PAGE_SIZE).size() + all.size()
+                        + reRanker.reRank(all, query).size() + reRanker.reRank(all, query, PAGE_SIZE).size();
+            }
+        }
+
+        for (String query : BROAD_QUERIES) {
+            List<SearchResult> all = queryProcessor.search(query);
+            System.out.println("\"" + query + "\" (" + all.size() + " matches, top " + PAGE_SIZE + ")");
+            double sortNanos = nanosPerRun(() -> queryProcessor.search(query).size());
+            double heapNanos = nanosPerRun(() -> queryProcessor.search(query, PAGE_SIZE).size());
+            System.out.printf("  %-30s %10.1f us/query%n", "search, full sort", sortNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "search, top-k heap", heapNanos / 1e3, sortNanos / heapNanos);
+            double reSortNanos = nanosPerRun(() -> reRanker.reRank(all, query).size());
+            double reHeapNanos = nanosPerRun(() -> reRanker.reRank(all, query, PAGE_SIZE).size());
+            System.out.printf("  %-30s %10.1f us/query%n", "reRank, full sort", reSortNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "reRank, top-k heap", reHeapNanos / 1e3, reSortNanos / reHeapNanos);
+        }
+    }
+
+    // --- pruning: exhaustive vs MaxScore top-k ---
+
+    private static void pruning(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        SearchIndex index = PackedSearchIndex.from(data);
+        QueryProcessor exhaustive = new QueryProcessor(textProcessor, index);
+        exhaustive.setPruning(false);
+        QueryProcessor pruned = new QueryProcessor(textProcessor, index);
+
+        // Long multi-term queries: every book's title plus description
+        List<String> queries = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            queries.add(book.getTitle() + " " + book.getDescription());
+        }
+
+        // Proof first: both evaluations must return the very same top-k, scores included
+        int mismatches = 0;
+        for (String query : queries) {
+            for (int k : new int[]{1, 10, PAGE_SIZE, 100}) {
+                if (!sameResults(exhaustive.search(query, k), pruned.search(query, k))) mismatches++;
+            }
+        }
+        System.out.println("Top-k mismatches over " + queries.size() * 4 + " (query, k) pairs: " + mismatches);
+        if (mismatches > 0) {
+            throw new IllegalStateException("MaxScore pruning differs from exhaustive scoring for " + mismatches + " (query, k) pairs");
+        }
+
+        long terms = 0;
+        for (String query : queries) terms += textProcessor.process(query).size();
+        System.out.printf("%d long queries, %.1f terms on average, k = %d%n", queries.size(), (double) terms / queries.size(), PAGE_SIZE);
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (String query : queries) blackhole += exhaustive.search(query, PAGE_SIZE).size() + pruned.search(query, PAGE_SIZE).size();
+        }
+        double exhaustiveNanos = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : queries) n += exhaustive.search(query, PAGE_SIZE).size();
+            return n;
+        }) / queries.size();
+        double prunedNanos = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : queries) n += pruned.search(query, PAGE_SIZE).size();
+            return n;
+        }) / queries.size();
+        System.out.printf("  %-30s %10.1f us/query%n", "exhaustive", exhaustiveNanos / 1e3);
+        System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "MaxScore pruning", prunedNanos / 1e3, exhaustiveNanos / prunedNanos);
+    }
+
+    // --- similarity: cosine vs BM25, ranking quality on known items and top-k speed ---
+
+    private static void similarity(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        SearchIndex index = PackedSearchIndex.from(data);
+        List<Book> books = new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES);
+
+        // Known-item searches: a book's title, and its title plus description, should rank it first
+        List<String> titles = new ArrayList<>();
+        List<String> longQueries = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+            longQueries.add(book.getTitle() + " " + book.getDescription());
+        }
+        System.out.printf("%d books; known-item hits at rank 1 (title / title + description), top-%d speed%n",
+                books.size(), PAGE_SIZE);
+
+        for (Similarity similarity : new Similarity[]{Similarity.cosine(), Similarity.bm25()}) {
+            QueryProcessor pruned = new QueryProcessor(textProcessor, index);
+            pruned.setSimilarity(similarity);
+            QueryProcessor exhaustive = new QueryProcessor(textProcessor, index);
+            exhaustive.setSimilarity(similarity);
+            exhaustive.setPruning(false);
+
+            int titleHits = 0, longHits = 0, mismatches = 0;
+            for (int i = 0; i < books.size(); i++) {
+                int bookId = books.get(i).getBookId();
+                List<SearchResult> byTitle = pruned.search(titles.get(i), PAGE_SIZE);
+                List<SearchResult> byText = pruned.search(longQueries.get(i), PAGE_SIZE);
+                if (!byTitle.isEmpty() && byTitle.get(0).getDocId() == bookId) titleHits++;
+                if (!byText.isEmpty() && byText.get(0).getDocId() == bookId) longHits++;
+                if (!sameResults(byText, exhaustive.search(longQueries.get(i), PAGE_SIZE))) mismatches++;
+            }
+
+            double exhaustiveNanos = nanosPerRun(() -> {
+                long n = 0;
+                for (String query : longQueries) n += exhaustive.search(query, PAGE_SIZE).size();
+                return n;
+            }) / longQueries.size();
+            double prunedNanos = nanosPerRun(() -> {
+                long n = 0;
+                for (String query : longQueries) n += pruned.search(query, PAGE_SIZE).size();
+                return n;
+            }) / longQueries.size();
+            System.out.printf("  %-22s rank-1 %3d / %3d   exhaustive %8.1f us/query   pruned %8.1f us/query  (%.1fx, %d top-k mismatches)%n",
+                    similarity, titleHits, longHits, exhaustiveNanos / 1e3, prunedNanos / 1e3,
+                    exhaustiveNanos / prunedNanos, mismatches);
+        }
+    }
+
+    private static boolean sameResults(List<SearchResult> a, List<SearchResult> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getDocId() != b.get(i).getDocId() || a.get(i).getScore() != b.get(i).getScore()) return false;
+        }
+        return true;
+    }
+
+    // --- boolean: conjunction by intersection vs the same terms ORed ---
+
+    // A rare term next to common ones, so the intersection is led by the short list
+    private static final String[] CONJUNCTIVE_QUERIES = {"+rust +programming", "+compiler +java", "+machine +learning +python"};
+
+    private static void booleanQueries(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (String query : CONJUNCTIVE_QUERIES) {
+                blackhole += queryProcessor.search(query).size() + queryProcessor.search(query.replace("+", "")).size();
+            }
+        }
+
+        for (String query : CONJUNCTIVE_QUERIES) {
+            String disjunctive = query.replace("+", "");
+            System.out.println("\"" + query + "\" (" + queryProcessor.search(query).size() + " matches, "
+                    + queryProcessor.search(disjunctive).size() + " when ORed)");
+            double orNanos = nanosPerRun(() -> queryProcessor.search(disjunctive).size());
+            double andNanos = nanosPerRun(() -> queryProcessor.search(query).size());
+            System.out.printf("  %-30s %10.1f us/query%n", "OR of all terms", orNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "intersection", andNanos / 1e3, orNanos / andNanos);
+        }
+    }
+
+    // --- concurrent: one shared QueryProcessor + ReRanker under load ---
+
+    private static void concurrent(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        Map<Integer, Book> bookMap = new HashMap<>();
+        for (Book book : corpus(scale)) bookMap.put(book.getBookId(), book);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+        ReRanker reRanker = new ReRanker(bookMap, "");
+
+        // Every title, then every title with its description: short and long queries mixed
+        List<String> queries = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            queries.add(book.getTitle());
+            queries.add(book.getTitle() + " " + book.getDescription());
+        }
+
+        // Single-threaded answers are the reference every concurrent run is checked against
+        List<List<SearchResult>> expected = new ArrayList<>(queries.size());
+        for (String query : queries) expected.add(serve(queryProcessor, reRanker, query));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println(queries.size() + " queries, " + cores + " cores, top " + PAGE_SIZE + " re-ranked");
+        double baseline = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            try (SearchExecutor executor = SearchExecutor.platformThreads(threads)) {
+                double perSecond = throughput(executor, threads, queryProcessor, reRanker, queries, expected, "platform x" + threads);
+                if (threads == 1) baseline = perSecond;
+                System.out.printf("  %-30s %10.2fx of 1 thread (ideal %dx)%n", "", perSecond / baseline, threads);
+            }
+        }
+        try (SearchExecutor executor = SearchExecutor.virtualThreads()) {
+            String label = executor.usesVirtualThreads() ? "virtual, " + cores * 16 + " in flight" : "no virtual threads (Java < 21)";
+            double perSecond = throughput(executor, cores * 16, queryProcessor, reRanker, queries, expected, label);
+            System.out.printf("  %-30s %10.2fx of 1 thread%n", "", perSecond / baseline);
+        }
+    }
+
+    // --- batch: replaying a query log one search at a time vs searchBatch ---
+
+    private static final int LOGGED_QUERIES = 20_000;
+
+    private static void batch(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+
+        // A log-like mix: titles, their first words and single title words, popular ones repeated.
+        // Operator queries with and without hyphens too: they take the single-query path, and
+        // "+a-b" must not share a batch slot with "+a b"
+        List<String> distinct = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            String[] words = book.getTitle().split("\\s+");
+            String last = words[words.length - 1];
+            distinct.add(book.getTitle());
+            if (words.length > 1) {
+                distinct.add(words[0] + " " + words[1]);
+                distinct.add("+" + words[0] + "-" + words[1]);
+                distinct.add("+" + words[0] + " " + words[1]);
+                distinct.add("-" + words[0] + "-" + words[1] + " " + last);
+                distinct.add("-" + words[0] + " " + words[1] + " " + last);
+            }
+            distinct.add(last);
+        }
+        Random random = new Random(42);
+        List<String> log = new ArrayList<>(LOGGED_QUERIES);
+        for (int i = 0; i < LOGGED_QUERIES; i++) {
+            // Squaring skews the picks towards the front of the list
+            double skewed = random.nextDouble();
+            log.add(distinct.get((int) (skewed * skewed * distinct.size())));
+        }
+
+        List<List<SearchResult>> expected = new ArrayList<>(log.size());
+        for (String query : log) expected.add(queryProcessor.search(query, PAGE_SIZE));
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool all = new ForkJoinPool(cores);
+        int mismatches = 0;
+        List<List<SearchResult>> batched = queryProcessor.searchBatch(log, PAGE_SIZE, all);
+        for (int i = 0; i < log.size(); i++) {
+            if (!sameResults(expected.get(i), batched.get(i))) mismatches++;
+        }
+        System.out.println(log.size() + " logged queries (" + new HashSet<>(log).size() + " distinct), top "
+                + PAGE_SIZE + ", " + cores + " cores; batch results differing from search(): " + mismatches);
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " batch results differ from search()");
+        }
+
+        double oneByOne = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : log) n += queryProcessor.search(query, PAGE_SIZE).size();
+            return n;
+        });
+        double batchSingle = nanosPerRun(() -> queryProcessor.searchBatch(log, PAGE_SIZE, single).size());
+        double batchAll = nanosPerRun(() -> queryProcessor.searchBatch(log, PAGE_SIZE, all).size());
+        System.out.printf("  %-30s %10.1f ms/log%n", "search() one by one", oneByOne / 1e6);
+        System.out.printf("  %-30s %10.1f ms/log  (%.1fx)%n", "searchBatch, 1 thread", batchSingle / 1e6, oneByOne / batchSingle);
+        System.out.printf("  %-30s %10.1f ms/log  (%.1fx)%n", "searchBatch, " + cores + " threads", batchAll / 1e6, oneByOne / batchAll);
+
+        // Without repeats, what is left is the shared decoding and the plain array loops
+        double distinctOneByOne = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : distinct) n += queryProcessor.search(query, PAGE_SIZE).size();
+            return n;
+        });
+        double distinctBatch = nanosPerRun(() -> queryProcessor.searchBatch(distinct, PAGE_SIZE, single).size());
+        single.shutdown();
+        all.shutdown();
+        System.out.printf("  %-30s %10.1f ms/batch%n", distinct.size() + " distinct, one by one", distinctOneByOne / 1e6);
+        System.out.printf("  %-30s %10.1f ms/batch  (%.1fx)%n", distinct.size() + " distinct, 1 thread", distinctBatch / 1e6,
+                distinctOneByOne / distinctBatch);
+    }
+
+    // --- simd: batch scoring through the scalar vs the Vector API kernel, one core ---
+
+    private static void simd(int scale) throws Exception {
+        if (!QueryProcessor.isVectorScoringAvailable()) {
+            System.err.println("❌ No Vector API: build with -Psimd and run with --add-modules jdk.incubator.vector");
+            return;
+        }
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        SearchIndex index = PackedSearchIndex.from(data);
+        QueryProcessor scalar = new QueryProcessor(textProcessor, index);
+        scalar.setVectorScoring(false);
+        QueryProcessor vector = new QueryProcessor(textProcessor, index);
+        vector.setVectorScoring(true);
+
+        // Long queries, so most of the time goes to adding postings
+        List<String> queries = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            queries.add(book.getTitle() + " " + book.getDescription());
+        }
+        long postings = 0;
+        for (String query : queries) {
+            for (String term : new HashSet<>(textProcessor.process(query))) {
+                PostingsCursor cursor = index.postings(term);
+                if (cursor != null) postings += cursor.cost();
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+        List<List<SearchResult>> expected = scalar.searchBatch(queries, PAGE_SIZE, pool);
+        List<List<SearchResult>> actual = vector.searchBatch(queries, PAGE_SIZE, pool);
+        int mismatches = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            if (!sameResults(expected.get(i), actual.get(i))) mismatches++;
+        }
+        System.out.printf("%d long queries, %.1f M postings added per batch; vector results differing from scalar: %d%n",
+                queries.size(), postings / 1e6, mismatches);
+
+        double scalarNanos = nanosPerRun(() -> scalar.searchBatch(queries, PAGE_SIZE, pool).size());
+        double vectorNanos = nanosPerRun(() -> vector.searchBatch(queries, PAGE_SIZE, pool).size());
+        pool.shutdown();
+        System.out.printf("  %-30s %10.1f ms/batch  %8.1f M postings/s per core%n", "scalar",
+                scalarNanos / 1e6, postings / (scalarNanos / 1e9) / 1e6);
+        System.out.printf("  %-30s %10.1f ms/batch  %8.1f M postings/s per core  (%.2fx)%n", "Vector API",
+                vectorNanos / 1e6, postings / (vectorNanos / 1e9) / 1e6, scalarNanos / vectorNanos);
+    }
+
+    // --- rerank: re-ranking after retrieval vs blended into the top-k collector ---
+
+    private static void reRank(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        Map<Integer, Book> bookMap = new HashMap<>();
+        for (Book book : corpus(scale)) bookMap.put(book.getBookId(), book);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+        ReRanker reRanker = new ReRanker(bookMap, "");
+
+        // Broad queries, plus title words that pick up title boosts
+        List<String> queries = new ArrayList<>(Arrays.asList(BROAD_QUERIES));
+        queries.addAll(Arrays.asList("clean code", "effective java", "+machine +learning"));
+
+        for (String query : queries) {
+            List<SearchResult> afterwards = reRanker.reRank(queryProcessor.search(query), query, PAGE_SIZE);
+            List<SearchResult> fused = queryProcessor.search(query, PAGE_SIZE, QueryBudget.unlimited(), reRanker.blend(query));
+            List<SearchResult> allAfterwards = reRanker.reRank(queryProcessor.search(query), query);
+            List<SearchResult> allFused = queryProcessor.search(query, QueryBudget.unlimited(), reRanker.blend(query));
+            if (!sameResults(afterwards, fused) || !sameResults(allAfterwards, allFused)) {
+                throw new IllegalStateException("Fused ranking differs from reRank for \"" + query + "\"");
+            }
+
+            System.out.println("\"" + query + "\" (" + allFused.size() + " ranked, top " + PAGE_SIZE + ")");
+            double afterNanos = nanosPerRun(() -> reRanker.reRank(queryProcessor.search(query), query, PAGE_SIZE).size());
+            double fusedNanos = nanosPerRun(() ->
+                    queryProcessor.search(query, PAGE_SIZE, QueryBudget.unlimited(), reRanker.blend(query)).size());
+            double allAfterNanos = nanosPerRun(() -> reRanker.reRank(queryProcessor.search(query), query).size());
+            double allFusedNanos = nanosPerRun(() ->
+                    queryProcessor.search(query, QueryBudget.unlimited(), reRanker.blend(query)).size());
+            System.out.printf("  %-30s %10.1f us/query%n", "top-k, search then reRank", afterNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.2fx)%n", "top-k, fused", fusedNanos / 1e3, afterNanos / fusedNanos);
+            System.out.printf("  %-30s %10.1f us/query%n", "all, search then reRank", allAfterNanos / 1e3);
+            System.out.printf("  %-30s %10.1f us/query  (%.2fx)%n", "all, fused", allFusedNanos / 1e3, allAfterNanos / allFusedNanos);
+        }
+    }
+
+    private static List<SearchResult> serve(QueryProcessor queryProcessor, ReRanker reRanker, String query) {
+        return queryProcessor.search(query, PAGE_SIZE, QueryBudget.unlimited(), reRanker.blend(query));
+    }
+
+    // Warms up, then keeps `tasks` request loops busy for MEASURE_NANOS checking every answer; returns queries/s.
+    // Any wrong answer, warm-up included, fails the run.
+    private static double throughput(SearchExecutor executor, int tasks, QueryProcessor queryProcessor, ReRanker reRanker,
+                                     List<String> queries, List<List<SearchResult>> expected, String label) {
+        long[] warmUp = serveFor(MEASURE_NANOS / 2, executor, tasks, queryProcessor, reRanker, queries, expected);
+
+        long start = System.nanoTime();
+        long[] counts = serveFor(MEASURE_NANOS, executor, tasks, queryProcessor, reRanker, queries, expected);
+        double perSecond = counts[0] / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("  %-30s %10.0f queries/s, %d wrong of %d%n", label, perSecond, counts[1], counts[0]);
+        if (warmUp[1] + counts[1] > 0) {
+            throw new IllegalStateException(label + ": " + (warmUp[1] + counts[1]) + " concurrent answers differ from the single-threaded ones");
+        }
+        return perSecond;
+    }
+
+    // Queries served and wrong answers over `nanos`
+    private static long[] serveFor(long nanos, SearchExecutor executor, int tasks, QueryProcessor queryProcessor, ReRanker reRanker,
+                                   List<String> queries, List<List<SearchResult>> expected) {
+        AtomicLong served = new AtomicLong();
+        AtomicLong mismatches = new AtomicLong();
+        long until = System.nanoTime() + nanos;
+        List<CompletableFuture<Void>> loops = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            int first = t * queries.size() / tasks; // Tasks start at different queries
+            loops.add(executor.submit(() -> {
+                for (int i = first; System.nanoTime() < until; i = (i + 1) % queries.size()) {
+                    if (!sameResults(expected.get(i), serve(queryProcessor, reRanker, queries.get(i)))) {
+                        mismatches.incrementAndGet();
+                    }
+                    served.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(loops.toArray(new CompletableFuture[0])).join();
+        return new long[]{served.get(), mismatches.get()};
+    }
+
+    // --- budget: latency percentiles with and without a postings budget ---
+
+    private static void budget(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORD_RES));
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, PackedSearchIndex.from(data));
+
+        // Pasted paragraphs: every book's title and description, all matches wanted
+        List<String> queries = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            queries.add(book.getTitle() + " " + book.getDescription());
+        }
+        long maxPostings = data.getDocNorms().size() / 2; // Half a pass over the catalog
+
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (String query : queries) {
+                blackhole += queryProcessor.search(query).size()
+                        + queryProcessor.search(query, QueryBudget.postings(maxPostings)).size();
+            }
+        }
+
+        System.out.println(queries.size() + " long queries, budget " + maxPostings + " postings");
+        for (boolean bounded : new boolean[]{false, true}) {
+            // Each query's best of 5 runs, so a GC pause is not taken for a slow query
+            long[] nanos = new long[queries.size()];
+            int truncated = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                nanos[i] = Long.MAX_VALUE;
+                for (int run = 0; run < 5; run++) {
+                    QueryBudget budget = bounded ? QueryBudget.postings(maxPostings) : QueryBudget.unlimited();
+                    long start = System.nanoTime();
+                    blackhole += queryProcessor.search(queries.get(i), budget).size();
+                    nanos[i] = Math.min(nanos[i], System.nanoTime() - start);
+                    if (run == 0 && budget.isTruncated()) truncated++;
+                }
+            }
+            Arrays.sort(nanos);
+            System.out.printf("  %-30s p50 %8.1f us  p99 %8.1f us  max %8.1f us  (%d truncated)%n",
+                    bounded ? "postings budget" : "unbounded", nanos[nanos.length / 2] / 1e3,
+                    nanos[nanos.length * 99 / 100] / 1e3, nanos[nanos.length - 1] / 1e3, truncated);
+        }
+    }
+
+    // --- fuzzy: typo'd query in one pass vs failed search + Suggester scan + second search ---
+
+    private static void fuzzy(int scale) throws Exception {
+        SearchIndexData data = buildIndex(scale);
+        Set<String> stopWords = StopWordLoader.loadStopWords(STOPWORD_RES);
+        TextProcessor textProcessor = new TextProcessor(stopWords);
+        SearchIndex index = PackedSearchIndex.from(data);
+        QueryProcessor fuzzy = new QueryProcessor(textProcessor, index);
+        QueryProcessor exact = new QueryProcessor(textProcessor, index);
+        exact.setFuzzy(false);
+        List<String> titles = new ArrayList<>();
+        for (Book book : corpus(scale)) titles.add(book.getTitle());
+        Suggester suggester = new Suggester(titles, stopWords);
+
+        // The longest word of every title with two of its letters swapped: a query that finds
+        // nothing as typed, so the old path always pays for the Suggester scan
+        List<String> queries = new ArrayList<>();
+        List<Integer> wanted = new ArrayList<>();
+        for (Book book : new BookLoader(BOOK_RES).loadBooksFromSource(BOOK_RES)) {
+            String longest = "";
+            for (String word : book.getTitle().split("\\s+")) if (word.length() > longest.length()) longest = word;
+            if (longest.length() < 4) continue;
+            int at = longest.length() / 2;
+            String typo = longest.substring(0, at - 1) + longest.charAt(at) + longest.charAt(at - 1) + longest.substring(at + 1);
+            if (!exact.search(typo).isEmpty()) continue;
+            queries.add(typo);
+            wanted.add(book.getBookId());
+        }
+
+        int found = 0, foundBefore = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            if (contains(fuzzy.search(queries.get(i)), wanted.get(i))) found++;
+            if (contains(suggestThenSearch(exact, suggester, queries.get(i)), wanted.get(i))) foundBefore++;
+        }
+        System.out.println(queries.size() + " misspelled title words; the book is found for " + found
+                + " in one pass, " + foundBefore + " through the suggestion fallback");
+
+        double beforeNanos = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : queries) n += suggestThenSearch(exact, suggester, query).size();
+            return n;
+        }) / queries.size();
+        double afterNanos = nanosPerRun(() -> {
+            long n = 0;
+            for (String query : queries) n += fuzzy.search(query).size();
+            return n;
+        }) / queries.size();
+        System.out.printf("  %-30s %10.1f us/query%n", "search, suggest, search again", beforeNanos / 1e3);
+        System.out.printf("  %-30s %10.1f us/query  (%.1fx)%n", "fuzzy terms, one pass", afterNanos / 1e3, beforeNanos / afterNanos);
+    }
+
+    private static boolean contains(List<SearchResult> results, int bookId) {
+        for (SearchResult result : results) {
+            if (result.getDocId() == bookId) return true;
+        }
+        return false;
+    }
+
+    // What DevShelfService did for a query without results before fuzzy terms
+    private static List<SearchResult> suggestThenSearch(QueryProcessor queryProcessor, Suggester suggester, String query) {
+        List<SearchResult> results = queryProcessor.search(query);
+        if (!results.isEmpty()) return results;
+        String suggestion = suggester.suggestSimilar(query);
+        return suggestion == null ? results : queryProcessor.search(suggestion);
+    }
+
+    // --- load: full vs compact (no tfIdfVectors) JSON index ---
+
+    private static void load(SearchIndexData data) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] full = mapper.writeValueAsBytes(data);
+        byte[] compact = mapper.writeValueAsBytes(new SearchIndexData(data.getInvertedIndex(), null,
+                data.getIdfScores(), data.getDocNorms(), data.getDocLengths()));
+        int sampleDoc = data.getDocNorms().keySet().iterator().next();
+        data = null;
+
+        System.out.println("Size (raw / gzip):");
+        System.out.printf("  %-30s %,14d / %,12d bytes%n", "full", full.length, gzipSize(full));
+        System.out.printf("  %-30s %,14d / %,12d bytes  (%.1f%% raw)%n", "compact", compact.length, gzipSize(compact),
+                100.0 * compact.length / full.length);
+
+        long warmUntil = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < warmUntil) {
+            for (byte[] json : List.of(full, compact)) {
+                blackhole += mapper.readValue(json, PackedSearchIndex.class).docCount();
+                blackhole += mapper.readValue(json, SearchIndexData.class).getInvertedIndex().size();
+            }
+        }
+
+        System.out.println("Load time:");
+        for (byte[] json : List.of(full, compact)) {
+            String label = json == full ? "full" : "compact";
+            System.out.printf("  %-30s %10.2f ms%n", label + " -> PackedSearchIndex",
+                    nanosPerRun(() -> mapper.readValue(json, PackedSearchIndex.class).docCount()) / 1e6);
+            System.out.printf("  %-30s %10.2f ms%n", label + " -> SearchIndexData",
+                    nanosPerRun(() -> mapper.readValue(json, SearchIndexData.class).getInvertedIndex().size()) / 1e6);
+        }
+
+        System.out.println("Retained heap:");
+        for (int i = 0; i < 2; i++) {
+            System.out.printf("  %-30s %,14d bytes%n", "full SearchIndexData",
+                    retainedBytes(() -> mapper.readValue(full, SearchIndexData.class)));
+            System.out.printf("  %-30s %,14d bytes%n", "compact SearchIndexData",
+                    retainedBytes(() -> mapper.readValue(compact, SearchIndexData.class)));
+        }
+
+        // Vectors of a compact index are only paid for when something needs them
+        PackedSearchIndex packed = mapper.readValue(compact, PackedSearchIndex.class);
+        long start = System.nanoTime();
+        int firstVector = packed.docVector(sampleDoc).size();
+        System.out.printf("First docVector on compact PackedSearchIndex: %.2f ms (%d terms)%n",
+                (System.nanoTime() - start) / 1e6, firstVector);
+    }
+
+    private static long gzipSize(byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    // --- Harness ---
+
+    interface Loader {
+        Object load() throws Exception;
+    }
+
+    // Heap still in use after loading, with everything but the result collected
+    static long retainedBytes(Loader loader) throws Exception {
+        long before = usedHeapAfterGc();
+        Object result = loader.load();
+        long after = usedHeapAfterGc();
+        Reference.reachabilityFence(result);
+        return after - before;
+    }
+
+    // Bytes allocated by the calling thread while loading (HotSpot only)
+    static long allocatedBytes(Loader loader) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        Object result = loader.load();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        Reference.reachabilityFence(result);
+        return allocated;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    interface Work {
+        long run() throws Exception;
+    }
+
+    // Warms up, then repeats the work for MEASURE_NANOS and prints items per second
+    static void report(String label, long itemsPerRun, Work work) throws Exception {
+        double nanos = nanosPerRun(work);
+        double perSecond = itemsPerRun / (nanos / 1e9);
+        System.out.printf("  %-30s %10.1f M/s   (%.3f ms/run) [%d]%n",
+                label, perSecond / 1e6, nanos / 1e6, blackhole & 1);
+    }
+
+    // Warms up, then repeats the work for MEASURE_NANOS and returns the mean time of one run
+    static double nanosPerRun(Work work) throws Exception {
+        for (int i = 0; i < 5; i++) blackhole += work.run();
+
+        int runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            blackhole += work.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        return (double) elapsed / runs;
+    }
+}
@@ -0,0 +1,65 @@
+package core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.Book;
+import features.search.IncrementalIndexer;
+import features.search.SearchIndex;
+import storage.BookLoader;
+import storage.IndexJournal;
+import storage.IndexLoader;
+import utils.StopWordLoader;
+import utils.StorageUtils;
+import utils.TextProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adds, replaces or deletes single books in the local index without a full reindex.
+ *
+ * Usage: BookEditMain upsert <book.json>   (one book object)
+ *        BookEditMain delete <bookId>
+ *
+ * Each change is journaled first, then the index and book list are checkpointed into AppData,
+ * where the app picks them up on its next start. If the checkpoint fails, the next start
+ * replays the journal instead.
+ */
+public class BookEditMain {
+
+    private static final String BOOKS_RES = "/data/book.json";
+    private static final String INDEX_RES = "/data/index_data.json";
+    private static final String STOPWORDS_RES = "/data/stopword.txt";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("upsert") || args[0].equals("delete"))) {
+            System.err.println("Usage: BookEditMain upsert <book.json> | delete <bookId>");
+            System.exit(2);
+        }
+
+        File appData = new File(StorageUtils.getAppDataDir());
+        Map<Integer, Book> bookMap = new HashMap<>();
+        new BookLoader(BOOKS_RES).streamBooks(b -> bookMap.put(b.getBookId(), b));
+        TextProcessor textProcessor = new TextProcessor(StopWordLoader.loadStopWords(STOPWORDS_RES));
+        IndexJournal journal = new IndexJournal(appData + File.separator + "index_journal.jsonl");
+
+        // Changes left over from an earlier run go in first
+        SearchIndex searchIndex = IncrementalIndexer.recover(new IndexLoader(INDEX_RES).load(), journal,
+                textProcessor, bookMap, appData);
+        IncrementalIndexer indexer = new IncrementalIndexer(searchIndex.toIndexData(), textProcessor, journal, bookMap);
+
+        if (args[0].equals("upsert")) {
+            Book book = new ObjectMapper().readValue(new File(args[1]), Book.class);
+            indexer.addOrUpdate(book);
+            System.out.println("Indexed book " + book.getBookId() + ": " + book.getTitle());
+        } else {
+            int bookId = Integer.parseInt(args[1]);
+            indexer.delete(bookId);
+            System.out.println("Deleted book " + bookId);
+        }
+
+        indexer.checkpoint(new File(appData, "index.bin"), new File(appData, "book.json"));
+        System.out.println("Index saved to " + appData);
+    }
+}
@@ -3,6 +3,7 @@ package core;
 import domain.Book;
 import domain.SearchResult;
 import features.recommendation.Graph;
+import features.search.QueryBudget;
 import features.search.QueryProcessor;
 import features.search.ReRanker;
 import features.search.Suggester;
@@ -60,14 +61,13 @@ public class BookSearchEngine {
     }
 
     private void processQuery(String query) {
-        List<SearchResult> tfIdfResults = queryProcessor.search(query);
-        if (tfIdfResults.isEmpty()) {
+        // Scored and re-ranked in one pass
+        List<SearchResult> rankedResults = queryProcessor.search(query, QueryBudget.unlimited(), reRanker.blend(query));
+        if (rankedResults.isEmpty()) {
             handleNoResults(query);
             return;
         }
 
-        List<SearchResult> rankedResults = reRanker.reRank(tfIdfResults, query);
-
         final List<Book> initialBooks = rankedResults.stream()
                 .map(r -> bookMap.get(r.getDocId()))
                 .filter(Objects::nonNull)
@@ -170,14 +170,12 @@ private void handleNoResults(String query) {
 
         view.showSuggestion(suggestion);
 
-        List<SearchResult> suggestedResults = queryProcessor.search(suggestion);
+        List<SearchResult> rerankedResults = queryProcessor.search(suggestion, QueryBudget.unlimited(), reRanker.blend(suggestion));
 
-        if (!suggestedResults.isEmpty()) {
+        if (!rerankedResults.isEmpty()) {
 
             view.showMessage("ℹ️ Showing results for the suggestion \"" + suggestion + "\" instead.");
 
-            List<SearchResult> rerankedResults = reRanker.reRank(suggestedResults, suggestion);
-
             List<Book> booksToDisplay = rerankedResults.stream()
                     .map(r -> bookMap.get(r.getDocId()))
                     .filter(Objects::nonNull)
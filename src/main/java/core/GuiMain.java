@@ -1,10 +1,11 @@
 package core;
 
 import domain.Book;
-import domain.SearchIndexData;
 import features.recommendation.Graph;
+import features.search.IncrementalIndexer;
 import features.search.QueryProcessor;
 import features.search.ReRanker;
+import features.search.SearchIndex;
 import features.search.Suggester;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -14,6 +15,7 @@ import javafx.scene.image.Image;
 import javafx.stage.Stage;
 import utils.LoggingService;
 import storage.BookLoader;
+import storage.IndexJournal;
 import storage.IndexLoader;
 import ui.gui.controllers.MainViewController;
 import ui.gui.services.DevShelfService;
@@ -37,22 +39,30 @@ public class GuiMain extends Application {
         String appDataPath = utils.StorageUtils.getAppDataDir();
         String logsPath = appDataPath + File.separator + "logs.json";
         String popularityPath = appDataPath + File.separator + "popularity.json";
+        String journalPath = appDataPath + File.separator + "index_journal.jsonl";
         System.out.println("User Data Directory: " + appDataPath);
 
         BookLoader bookLoader = new BookLoader(BOOKS_RES);
-        List<Book> books = bookLoader.loadBooks();
+        // Books go straight into the map while book.json is parsed
         Map<Integer, Book> bookMap = new HashMap<>();
-        for(Book b : books) bookMap.put(b.getBookId(), b);
+        bookLoader.streamBooks(b -> bookMap.put(b.getBookId(), b));
+        List<Book> books = new ArrayList<>(bookMap.values());
 
         IndexLoader indexLoader = new IndexLoader(INDEX_RES);
-        SearchIndexData indexData = indexLoader.loadIndex();
+        SearchIndex searchIndex = indexLoader.load();
 
         Set<String> stopWords = StopWordLoader.loadStopWords(STOPWORDS_RES);
         TextProcessor textProcessor = new TextProcessor(stopWords);
 
-        QueryProcessor queryProcessor = new QueryProcessor(textProcessor,
-                indexData.getInvertedIndex(), indexData.getTfIdfVectors(), indexData.getIdfScores());
+        // Re-apply book changes made since the index was last saved, and save them into AppData
+        // so the next start does not replay them again
+        IndexJournal journal = new IndexJournal(journalPath);
+        if (!journal.isEmpty()) {
+            searchIndex = IncrementalIndexer.recover(searchIndex, journal, textProcessor, bookMap, new File(appDataPath));
+            books = new ArrayList<>(bookMap.values());
+        }
 
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, searchIndex);
 
         LoggingService loggingService = new LoggingService(logsPath);
         ReRanker reRanker = new ReRanker(bookMap, popularityPath);
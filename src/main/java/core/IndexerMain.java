@@ -6,6 +6,8 @@ import domain.Book;
 import domain.Posting;
 import domain.SearchIndexData;
 import features.search.IndexBuilder;
+import features.search.ParallelIndexBuilder;
+import storage.BinaryIndexWriter;
 import storage.BookLoader;
 import utils.StopWordLoader;
 import utils.TextProcessor;
@@ -13,21 +15,36 @@ import utils.TfIdfCalculator;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class IndexerMain {
 
     // OUTPUT: We write to the source folder so Maven includes it in the build
     private static final String INDEX_OUTPUT_PATH = "src/main/resources/data/index_data.json";
+    // Binary twin of the JSON index; this is the one the apps map at startup
+    private static final String BINARY_INDEX_OUTPUT_PATH = "src/main/resources/data/index_data.bin";
 
     // INPUTS: We use Resource Paths (starts with /) because Loaders use getResourceAsStream
     private static final String STOPWORD_RES = "/data/stopword.txt";
     private static final String BOOK_RES = "/data/book.json";
 
+    // Books handed to the parallel builder at a time while book.json is streamed
+    private static final int BATCH_SIZE = 4096;
+
     public static void main(String[] args) {
         System.out.println("--- Starting Offline Indexer ---");
+        int threads = parseThreads(args);
+        // Compact indexes leave out tfIdfVectors; readers derive them from postings and IDF when needed
+        boolean compact = Arrays.asList(args).contains("--compact");
+        if (threads < 1) {
+            System.err.println("❌ Usage: IndexerMain [--threads N] [--compact]   (N >= 1, default 1)");
+            return;
+        }
         try {
             // 1. Prepare Output File
             File outputFile = new File(INDEX_OUTPUT_PATH);
@@ -41,36 +58,76 @@ public class IndexerMain {
 
             System.out.println("Loading books from resource: " + BOOK_RES);
             BookLoader loader = new BookLoader(BOOK_RES);
-            IndexBuilder indexer = new IndexBuilder(textProcessor);
             TfIdfCalculator tfIdfCalculator = new TfIdfCalculator();
 
             // 3. Indexing Process
+            // Books are indexed while book.json is being parsed, so the catalog is never held
+            // in memory as a whole (the parallel path keeps one batch at a time).
             System.out.println("Indexing books...");
-            List<Book> allBooks = loader.loadBooksFromSource(BOOK_RES);
-            if (allBooks.isEmpty()) {
-                System.err.println("❌ Critical Error: No books loaded. Check book.json path.");
-                return;
-            }
-
-            for(Book book : allBooks) {
-                indexer.indexDocument(book);
+            long start = System.currentTimeMillis();
+            Map<String, List<Posting>> invertedIndex;
+            int bookCount;
+            if (threads > 1) {
+                // Parallel build: same output as the sequential path, spread over a ForkJoinPool
+                System.out.println("Using " + threads + " indexing threads.");
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    ParallelIndexBuilder builder = new ParallelIndexBuilder(stopWords, pool);
+                    List<Book> batch = new ArrayList<>(BATCH_SIZE);
+                    bookCount = loader.streamBooksFromSource(BOOK_RES, book -> {
+                        batch.add(book);
+                        if (batch.size() == BATCH_SIZE) {
+                            builder.add(batch);
+                            batch.clear();
+                        }
+                    });
+                    builder.add(batch);
+                    if (bookCount == 0) {
+                        System.err.println("❌ Critical Error: No books loaded. Check book.json path.");
+                        return;
+                    }
+                    invertedIndex = builder.finish();
+                    System.out.println("Indexing Complete. Found " + invertedIndex.size() + " unique terms.");
+
+                    // 4. Calculations
+                    System.out.println("Calculating TF-IDF vectors...");
+                    tfIdfCalculator.calculateIdf(invertedIndex, bookCount, pool);
+                    tfIdfCalculator.calculateTfIdf(invertedIndex, pool);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                IndexBuilder indexer = new IndexBuilder(textProcessor);
+                bookCount = loader.streamBooksFromSource(BOOK_RES, indexer::indexDocument);
+                if (bookCount == 0) {
+                    System.err.println("❌ Critical Error: No books loaded. Check book.json path.");
+                    return;
+                }
+                invertedIndex = indexer.getInvertedIndex();
+                System.out.println("Indexing Complete. Found " + invertedIndex.size() + " unique terms.");
+
+                // 4. Calculations
+                System.out.println("Calculating TF-IDF vectors...");
+                tfIdfCalculator.calculateIdf(invertedIndex, bookCount);
+                tfIdfCalculator.calculateTfIdf(invertedIndex);
             }
-            Map<String, List<Posting>> invertedIndex = indexer.getInvertedIndex();
-            System.out.println("Indexing Complete. Found " + invertedIndex.size() + " unique terms.");
-
-            // 4. Calculations
-            System.out.println("Calculating TF-IDF vectors...");
-            tfIdfCalculator.calculateIdf(invertedIndex, allBooks.size());
-            tfIdfCalculator.calculateTfIdf(invertedIndex);
+            System.out.println("Index built in " + (System.currentTimeMillis() - start) + " ms.");
 
             // 5. Save Data
             SearchIndexData indexData = new SearchIndexData(
                     invertedIndex,
-                    tfIdfCalculator.getTfIdfVectors(),
-                    tfIdfCalculator.getIdfScores()
+                    compact ? null : tfIdfCalculator.getTfIdfVectors(),
+                    tfIdfCalculator.getIdfScores(),
+                    tfIdfCalculator.getDocNorms(),
+                    tfIdfCalculator.getDocLengths()
             );
 
-            System.out.println("Saving index to: " + outputFile.getAbsolutePath());
+            File binaryFile = new File(BINARY_INDEX_OUTPUT_PATH);
+            System.out.println("Saving binary index to: " + binaryFile.getAbsolutePath());
+            BinaryIndexWriter.write(indexData, binaryFile);
+
+            // JSON export is kept for debugging and as a fallback for the loader
+            System.out.println("Saving " + (compact ? "compact " : "") + "index to: " + outputFile.getAbsolutePath());
             ObjectMapper mapper = new ObjectMapper();
             mapper.enable(SerializationFeature.INDENT_OUTPUT);
             mapper.writeValue(outputFile, indexData);
@@ -82,5 +139,27 @@ public class IndexerMain {
             System.out.println(" --- ❌ Indexer failed with an error. --- ");
         }
     }
+
+    // Reads "--threads N" (or "--threads=N"). Returns 1 when absent, -1 when malformed.
+    private static int parseThreads(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String value = null;
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                value = args[i + 1];
+            } else if (args[i].startsWith("--threads=")) {
+                value = args[i].substring("--threads=".length());
+            } else if (args[i].equals("--threads")) {
+                return -1;
+            }
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return 1;
+    }
 }
 
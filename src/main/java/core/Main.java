@@ -1,13 +1,15 @@
 package core;
 
 import domain.Book;
-import domain.SearchIndexData;
 import features.recommendation.Graph;
+import features.search.IncrementalIndexer;
 import features.search.QueryProcessor;
 import features.search.ReRanker;
+import features.search.SearchIndex;
 import features.search.Suggester;
 import utils.LoggingService;
 import storage.BookLoader;
+import storage.IndexJournal;
 import storage.IndexLoader;
 import ui.cli.CliView;
 import utils.StopWordLoader;
@@ -32,27 +34,30 @@ public class Main {
         String appDataPath = utils.StorageUtils.getAppDataDir();
         String logsPath = appDataPath + File.separator + "logs.json";
         String popularityPath = appDataPath + File.separator + "popularity.json";
+        String journalPath = appDataPath + File.separator + "index_journal.jsonl";
         System.out.println("User Data Directory: " + appDataPath);
 
         IndexLoader loader = new IndexLoader(INDEX_RES);
-        SearchIndexData loadedData = loader.loadIndex();
+        SearchIndex searchIndex = loader.load();
 
         BookLoader bookLoader = new BookLoader(BOOKS_RES);
-        List<Book> allBooks = bookLoader.loadBooks();
+        // Books go straight into the map while book.json is parsed
         Map<Integer, Book> bookMap = new HashMap<>();
-        for (Book b : allBooks) {
-            if (b != null) bookMap.put(b.getBookId(), b);
-        }
+        bookLoader.streamBooks(b -> bookMap.put(b.getBookId(), b));
+        List<Book> allBooks = new ArrayList<>(bookMap.values());
 
         Set<String> stopWords = StopWordLoader.loadStopWords(STOPWORDS_RES);
         TextProcessor textProcessor = new TextProcessor(stopWords);
 
-        QueryProcessor queryProcessor = new QueryProcessor(
-                textProcessor,
-                loadedData.getInvertedIndex(),
-                loadedData.getTfIdfVectors(),
-                loadedData.getIdfScores()
-        );
+        // Re-apply book changes made since the index was last saved, and save them into AppData
+        // so the next start does not replay them again
+        IndexJournal journal = new IndexJournal(journalPath);
+        if (!journal.isEmpty()) {
+            searchIndex = IncrementalIndexer.recover(searchIndex, journal, textProcessor, bookMap, new File(appDataPath));
+            allBooks = new ArrayList<>(bookMap.values());
+        }
+
+        QueryProcessor queryProcessor = new QueryProcessor(textProcessor, searchIndex);
 
         LoggingService loggingService = new LoggingService(logsPath);
         ReRanker reRanker = new ReRanker(bookMap, popularityPath);
@@ -0,0 +1,25 @@
+package domain;
+
+import lombok.Getter;
+import java.time.Instant;
+
+@Getter
+public class JournalEntry {
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    private String op;
+    private int bookId;
+    private Book book; // null for deletes
+    private String timestamp;
+
+    public JournalEntry() {}
+
+    public JournalEntry(String op, int bookId, Book book) {
+        this.op = op;
+        this.bookId = bookId;
+        this.book = book;
+        this.timestamp = Instant.now().toString();
+    }
+
+}
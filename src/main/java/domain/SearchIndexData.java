@@ -1,31 +1,87 @@
 package domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.Getter;
+import lombok.Setter;
+import utils.TfIdfCalculator;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonPropertyOrder({"invertedIndex", "tfIdfVectors", "idfScores", "docNorms", "docLengths"})
 public class SearchIndexData {
     @Getter
     private Map<String, List<Posting>> invertedIndex;
-    @Getter
+    // Absent in compact indexes, see getTfIdfVectors()
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Map<Integer, Map<String, Double>> tfIdfVectors;
+    private transient Map<Integer, Map<String, Double>> derivedTfIdfVectors;
     @Getter
     private Map<String, Double> idfScores;
+    // Per-document L2 norm and token count; null in indexes saved before they were added
+    @Getter @Setter
+    private Map<Integer, Double> docNorms;
+    @Getter @Setter
+    private Map<Integer, Integer> docLengths;
 
     public SearchIndexData() {}
 
     public SearchIndexData(Map<String, List<Posting>> invertedIndex, Map<Integer, Map<String, Double>> tfIdfVectors, Map<String, Double> idfScores) {
+        this(invertedIndex, tfIdfVectors, idfScores, null, null);
+    }
+
+    // Pass null tfIdfVectors for a compact index: the vectors are then never saved
+    public SearchIndexData(Map<String, List<Posting>> invertedIndex, Map<Integer, Map<String, Double>> tfIdfVectors, Map<String, Double> idfScores,
+                           Map<Integer, Double> docNorms, Map<Integer, Integer> docLengths) {
         this.invertedIndex = invertedIndex;
         this.tfIdfVectors = tfIdfVectors;
         this.idfScores = idfScores;
+        this.docNorms = docNorms;
+        this.docLengths = docLengths;
     }
 
+    /**
+     * Tf-Idf weight of every term of every document.
+     * A compact index does not store them: they are rebuilt from the postings and idfScores
+     * on first access, and are not written back when the index is saved again.
+     */
+    @JsonIgnore
+    public Map<Integer, Map<String, Double>> getTfIdfVectors() {
+        if (tfIdfVectors != null) return tfIdfVectors;
+        if (derivedTfIdfVectors == null && invertedIndex != null && idfScores != null) {
+            derivedTfIdfVectors = deriveTfIdfVectors();
+        }
+        return derivedTfIdfVectors;
+    }
 
+    @JsonIgnore
+    public boolean isCompact() {
+        return tfIdfVectors == null;
+    }
+
+    private Map<Integer, Map<String, Double>> deriveTfIdfVectors() {
+        Map<Integer, Map<String, Double>> vectors = new HashMap<>();
+        for (Map.Entry<String, List<Posting>> entry : invertedIndex.entrySet()) {
+            String term = entry.getKey();
+            double idf = idfScores.getOrDefault(term, 0.0);
+            for (Posting posting : entry.getValue()) {
+                vectors.computeIfAbsent(posting.getDocId(), k -> new HashMap<>())
+                        .put(term, TfIdfCalculator.tf(posting.getFreq()) * idf);
+            }
+        }
+        return vectors;
+    }
 }
 
 /**
- * SearchIndexData -> InvertedIndex, tfIdfVectors & idfScores.
+ * SearchIndexData -> InvertedIndex, tfIdfVectors, idfScores, docNorms & docLengths.
 * Contain Our InvertedIndex and Tf-Idf, idfScores ready to be loaded into json
  * json to Map and Map to json
- */
\ No newline at end of file
+ */
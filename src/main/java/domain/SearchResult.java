@@ -16,7 +16,9 @@ public class SearchResult implements Comparable<SearchResult> {
 
     @Override
     public int compareTo(SearchResult other) {
-        return Double.compare(other.score, this.score);
+        int byScore = Double.compare(other.score, this.score);
+        // Equal scores rank the lower docId first, so a top-k cut agrees with a full sort
+        return byScore != 0 ? byScore : Integer.compare(this.docId, other.docId);
     }
 
     @Override
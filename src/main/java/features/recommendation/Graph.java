@@ -113,7 +113,9 @@ public class Graph {
         return a != null && b != null && a.equalsIgnoreCase(b);
     }
 
-    // Popularity-aware recommendations
+    // Popularity-aware recommendations.
+    // Only reads the graph and keeps its working state local, so once buildGraph has returned
+    // (before the graph is shared) any number of threads can call it at the same time.
     public List<String> recommendPopularBooks(String bookTitle, int limit, Map<Integer, Double> popularityMap) {
         String key = normalize(bookTitle);
         Map<String, Double> relatedBooks = adjList.getOrDefault(key, Collections.emptyMap());
@@ -121,23 +123,17 @@ public class Graph {
 
         final double ALPHA = 0.7; // 70% relevance, 30% popularity
 
-        result.sort((a, b) -> {
-            double relA = relatedBooks.getOrDefault(a, 0.0);
-            double relB = relatedBooks.getOrDefault(b, 0.0);
-
-            double popA = popularityMap != null
-                    ? popularityMap.getOrDefault(titleToId.getOrDefault(a, -1), 0.0)
-                    : 0.0;
-
-            double popB = popularityMap != null
-                    ? popularityMap.getOrDefault(titleToId.getOrDefault(b, -1), 0.0)
+        // Each book's blended score, computed once instead of on every comparison
+        Map<String, Double> scores = new HashMap<>();
+        for (String title : result) {
+            double relevance = relatedBooks.getOrDefault(title, 0.0);
+            double popularity = popularityMap != null
+                    ? popularityMap.getOrDefault(titleToId.getOrDefault(title, -1), 0.0)
                     : 0.0;
+            scores.put(title, ALPHA * relevance + (1 - ALPHA) * popularity);
+        }
 
-            double scoreA = ALPHA * relA + (1 - ALPHA) * popA;
-            double scoreB = ALPHA * relB + (1 - ALPHA) * popB;
-
-            return Double.compare(scoreB, scoreA);
-        });
+        result.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
 
         return result.subList(0, Math.min(limit, result.size()));
     }
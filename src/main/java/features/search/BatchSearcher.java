@@ -0,0 +1,170 @@
+package features.search;
+
+import domain.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Top-k of many queries against one index snapshot (see QueryProcessor.searchBatch).
+ *
+ * Every posting list the batch needs is decoded once, up front and in parallel, into a docOrdinal
+ * array and a docWeight array (the query-independent part of each posting's score), shared
+ * read-only by all queries of the batch. A query is then scored term at a time straight from
+ * those arrays into a dense array of sums, through a ScoringKernel (SIMD when enabled), and its
+ * matches are collected from its own lists, clearing the sums for the next query. Queries are
+ * ordered by their longest list, so queries sharing terms are scored next to each other while
+ * those arrays are still in cache. Chunks of them run in parallel on a ForkJoinPool.
+ *
+ * Scoring is the exhaustive term-at-a-time sum of QueryProcessor, in the same term order, so each
+ * result list is bit-identical to search(query, k). Queries with operators or quotes take the
+ * single-query path. The decoded lists stay in memory until the batch ends; an instance serves
+ * one batch.
+ */
+class BatchSearcher {
+
+    // Queries per parallel task
+    private static final int CHUNK_SIZE = 32;
+
+    // Per-document sums arrays, all zeros, reused across chunks and batches like
+    // QueryProcessor's accumulators
+    private static final ConcurrentLinkedQueue<double[]> SUMS = new ConcurrentLinkedQueue<>();
+
+    private final SearchIndex index;
+    private final Similarity similarity;
+    private final ScoringKernel kernel;
+    // Every term ordinal of the batch (sorted) and its decoded list at the same position
+    private int[] ordinals;
+    private DecodedPostings[] decoded;
+
+    BatchSearcher(SearchIndex index, Similarity similarity, ScoringKernel kernel) {
+        this.index = index;
+        this.similarity = similarity;
+        this.kernel = kernel;
+    }
+
+    // A posting list as the documents' ordinals and weights, in docId order
+    private static final class DecodedPostings {
+        final int[] docOrdinals;
+        final double[] docWeights;
+        final int size;
+
+        DecodedPostings(int[] docOrdinals, double[] docWeights, int size) {
+            this.docOrdinals = docOrdinals;
+            this.docWeights = docWeights;
+            this.size = size;
+        }
+    }
+
+    // results.get(i) is the top-k of queries.get(i)
+    List<List<SearchResult>> topK(List<BooleanQuery> queries, int k, ForkJoinPool pool) {
+        QueryVector[] vectors = new QueryVector[queries.size()];
+        Integer[] order = new Integer[queries.size()];
+        int[] longest = new int[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            order[i] = i;
+            longest[i] = -1;
+            if (!queries.get(i).isPlain()) continue;
+            vectors[i] = QueryVector.of(index, queries.get(i).scoringTerms(), similarity);
+            int longestCost = -1;
+            for (int t = 0; t < vectors[i].size; t++) {
+                int cost = index.postings(vectors[i].ordinals[t]).cost();
+                if (cost > longestCost) {
+                    longestCost = cost;
+                    longest[i] = vectors[i].ordinals[t];
+                }
+            }
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> longest[i]).thenComparingInt(i -> i));
+
+        ordinals = Arrays.stream(vectors)
+                .filter(vector -> vector != null)
+                .flatMapToInt(vector -> Arrays.stream(vector.ordinals, 0, vector.size))
+                .distinct().sorted().toArray();
+        decoded = new DecodedPostings[ordinals.length];
+        pool.submit(() -> IntStream.range(0, ordinals.length).parallel()
+                .forEach(j -> decoded[j] = decode(ordinals[j]))).join();
+
+        // Each slot is set by exactly one chunk; the join publishes them
+        List<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        int chunks = (order.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            double[] sums = acquireSums(index.docCount());
+            ScoreAccumulator accumulator = QueryProcessor.acquireAccumulator();
+            try {
+                for (int j = chunk * CHUNK_SIZE; j < Math.min(order.length, (chunk + 1) * CHUNK_SIZE); j++) {
+                    int i = order[j];
+                    results.set(i, vectors[i] != null
+                            ? score(vectors[i], k, sums)
+                            : QueryProcessor.scoreTopK(index, similarity, queries.get(i), k, accumulator,
+                                    QueryBudget.unlimited(), ScoreBlend.RELEVANCE));
+                }
+                // Only back in the pool when every query cleared its sums
+                SUMS.offer(sums);
+            } finally {
+                QueryProcessor.releaseAccumulator(accumulator);
+            }
+        })).join();
+        return results;
+    }
+
+    // A zeroed sums array for docCount documents; one sized for another index is dropped
+    private static double[] acquireSums(int docCount) {
+        double[] sums;
+        while ((sums = SUMS.poll()) != null) {
+            if (sums.length == docCount) return sums;
+        }
+        return new double[docCount];
+    }
+
+    // Same sums, in the same order, as QueryProcessor's exhaustive top-k. sums is all zeros on
+    // entry and again on return.
+    private List<SearchResult> score(QueryVector queryVector, int k, double[] sums) {
+        DecodedPostings[] lists = new DecodedPostings[queryVector.size];
+        for (int t = 0; t < queryVector.size; t++) {
+            lists[t] = decoded[Arrays.binarySearch(ordinals, queryVector.ordinals[t])];
+            kernel.addAll(sums, lists[t].docOrdinals, lists[t].docWeights, lists[t].size, queryVector.weights[t]);
+        }
+
+        // A document with a zero sum scores 0 and is never a result, so a non-zero sum marks a
+        // match that has not been collected yet
+        TopKCollector topK = new TopKCollector(k, Comparator.naturalOrder());
+        double queryNorm = similarity.queryNorm(index, queryVector);
+        for (DecodedPostings list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                int docOrdinal = list.docOrdinals[i];
+                double sum = sums[docOrdinal];
+                if (sum == 0.0) continue;
+                sums[docOrdinal] = 0.0;
+
+                int docId = index.docId(docOrdinal);
+                double score = similarity.score(index, docId, sum, queryNorm);
+                if (score > 0 && topK.competes(score)) {
+                    topK.offer(new SearchResult(docId, score));
+                }
+            }
+        }
+        return topK.results();
+    }
+
+    private DecodedPostings decode(int ordinal) {
+        PostingsCursor postings = index.postings(ordinal);
+        int[] docOrdinals = new int[postings.cost()];
+        double[] docWeights = new double[docOrdinals.length];
+        double idf = index.idf(ordinal);
+        int size = 0;
+        while (postings.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+            int docOrdinal = index.docOrdinal(postings.docId());
+            if (docOrdinal < 0) continue; // Not an indexed document, so never a result
+            docOrdinals[size] = docOrdinal;
+            docWeights[size++] = similarity.docWeight(index, postings.docId(), postings.freq(), idf);
+        }
+        return new DecodedPostings(docOrdinals, docWeights, size);
+    }
+}
@@ -0,0 +1,220 @@
+package features.search;
+
+import domain.SearchResult;
+import features.search.BooleanQuery.Clause;
+import features.search.BooleanQuery.Occur;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a BooleanQuery that uses operators or quotes.
+ *
+ * With required terms the candidates come from a conjunction: cursors are sorted by length, the
+ * shortest leads, and every other cursor is advanced (galloping / skip-table jumps) straight to
+ * the lead's document. When one overshoots, the lead jumps to it instead. The work therefore
+ * follows the rarest required term instead of the union of all lists. Optional terms only add to
+ * the score of those candidates. Without required terms the optional terms are ORed as in a
+ * plain search. Candidates are visited in docId order either way, so prohibited clauses and
+ * phrases are checked with forward-only cursors.
+ *
+ * Scores are the Similarity's (cosine by default) over the required and optional terms;
+ * prohibited terms do not count.
+ * Required and prohibited phrases are checked on term positions (within their slop). An optional
+ * phrase adds PHRASE_BOOST / (1 + distance beyond its slop), so exact hits rank first and
+ * near misses next.
+ */
+class BooleanEvaluator {
+
+    // An exact hit gets 2, one position off 1, ...: the gap to the next step is never below the
+    // largest score difference (1, both similarities score in [0, 1]), so a closer phrase is never
+    // outranked by a looser one
+    static final double PHRASE_BOOST = 2.0;
+
+    private final SearchIndex index;
+    private final Similarity similarity;
+
+    BooleanEvaluator(SearchIndex index) {
+        this(index, Similarity.cosine());
+    }
+
+    BooleanEvaluator(SearchIndex index, Similarity similarity) {
+        this.index = index;
+        this.similarity = similarity;
+    }
+
+    // Unsorted matches with their scores
+    List<SearchResult> evaluate(BooleanQuery query, ScoreAccumulator accumulator) {
+        return evaluate(query, accumulator, QueryBudget.unlimited());
+    }
+
+    // Same, returning the matches found so far once the budget is spent
+    List<SearchResult> evaluate(BooleanQuery query, ScoreAccumulator accumulator, QueryBudget budget) {
+        List<SearchResult> results = new ArrayList<>();
+
+        int[] required = requiredOrdinals(query);
+        if (required == null) return results; // A required term that is not indexed matches nothing
+
+        QueryVector queryVector = QueryVector.of(index, query.scoringTerms(), similarity);
+        double queryNorm = similarity.queryNorm(index, queryVector);
+        if (queryNorm == 0.0) return results; // Only prohibited (or zero-idf) terms: nothing to rank
+
+        Filters filters = new Filters(query);
+
+        if (required.length > 0) {
+            DocScorer scorer = new DocScorer(queryVector);
+            PostingsCursor[] cursors = new PostingsCursor[required.length];
+            for (int i = 0; i < required.length; i++) {
+                cursors[i] = index.postings(required[i]);
+            }
+            Arrays.sort(cursors, Comparator.comparingInt(PostingsCursor::cost));
+
+            int doc = cursors[0].nextDoc();
+            candidates:
+            while (doc != PostingsCursor.NO_MORE_DOCS) {
+                if (!budget.visit(cursors.length)) break;
+                for (int i = 1; i < cursors.length; i++) {
+                    int other = cursors[i].advance(doc);
+                    if (other > doc) {
+                        doc = cursors[0].advance(other);
+                        continue candidates;
+                    }
+                }
+                if (filters.accepts(doc)) {
+                    addResult(results, doc, scorer.dotProduct(doc), queryNorm, filters);
+                }
+                doc = cursors[0].nextDoc();
+            }
+        } else {
+            accumulator.reset(index.docCount());
+            accumulator.addAll(index, similarity, queryVector, budget);
+            for (int docOrdinal : accumulator.sortedOrdinals()) {
+                int doc = index.docId(docOrdinal);
+                if (filters.accepts(doc)) {
+                    addResult(results, doc, accumulator.score(docOrdinal), queryNorm, filters);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void addResult(List<SearchResult> results, int docId, double dotProduct, double queryNorm, Filters filters) {
+        double score = similarity.score(index, docId, dotProduct, queryNorm);
+        if (score > 0) {
+            results.add(new SearchResult(docId, score + filters.phraseBoost(docId)));
+        }
+    }
+
+    // Distinct ordinals of all required terms, or null when one of them is not indexed
+    private int[] requiredOrdinals(BooleanQuery query) {
+        List<String> terms = new ArrayList<>();
+        for (Clause clause : query.clauses(Occur.REQUIRED)) {
+            terms.addAll(clause.getTerms());
+        }
+        int[] ordinals = new int[terms.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = index.termOrdinal(terms.get(i));
+            if (ordinals[i] < 0) return null;
+        }
+        return Arrays.stream(ordinals).distinct().toArray();
+    }
+
+    // Dot product of single candidate documents, visited in increasing docId order
+    private class DocScorer {
+        private final QueryVector queryVector;
+        private final PostingsCursor[] cursors;
+        private final double[] idf;
+
+        DocScorer(QueryVector queryVector) {
+            this.queryVector = queryVector;
+            this.cursors = new PostingsCursor[queryVector.size];
+            this.idf = new double[queryVector.size];
+            for (int i = 0; i < queryVector.size; i++) {
+                cursors[i] = index.postings(queryVector.ordinals[i]);
+                idf[i] = index.idf(queryVector.ordinals[i]);
+            }
+        }
+
+        // Summed in query-term order, like the term-at-a-time scorer
+        double dotProduct(int doc) {
+            double dot = 0.0;
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i].advance(doc) == doc) {
+                    dot += queryVector.weights[i] * similarity.docWeight(index, doc, cursors[i].freq(), idf[i]);
+                }
+            }
+            return dot;
+        }
+    }
+
+    /**
+     * Per-document checks that need more than the candidate's docId: prohibited clauses (a
+     * document is excluded when it contains every term of one, as a phrase for quoted ones),
+     * required phrases and optional phrase boosts. Must be used with increasing docIds.
+     */
+    private class Filters {
+        private final List<PhraseMatcher> prohibited = new ArrayList<>();
+        private final List<Clause> prohibitedClauses = new ArrayList<>();
+        private final List<PhraseMatcher> requiredPhrases = new ArrayList<>();
+        private final List<Clause> requiredPhraseClauses = new ArrayList<>();
+        private final List<PhraseMatcher> optionalPhrases = new ArrayList<>();
+        private final List<Clause> optionalPhraseClauses = new ArrayList<>();
+        private boolean impossible; // A required phrase has a term that is not indexed
+
+        Filters(BooleanQuery query) {
+            for (Clause clause : query.getClauses()) {
+                // A clause with an unknown term can never match: it excludes nothing and boosts nothing
+                PhraseMatcher matcher = PhraseMatcher.of(index, clause.getTerms());
+                if (clause.getOccur() == Occur.PROHIBITED) {
+                    if (matcher != null) {
+                        prohibited.add(matcher);
+                        prohibitedClauses.add(clause);
+                    }
+                } else if (clause.isPhrase()) {
+                    if (clause.getOccur() == Occur.REQUIRED) {
+                        impossible |= matcher == null;
+                        requiredPhrases.add(matcher);
+                        requiredPhraseClauses.add(clause);
+                    } else if (matcher != null) {
+                        optionalPhrases.add(matcher);
+                        optionalPhraseClauses.add(clause);
+                    }
+                }
+            }
+        }
+
+        boolean accepts(int doc) {
+            if (impossible) return false;
+            for (int i = 0; i < prohibited.size(); i++) {
+                Clause clause = prohibitedClauses.get(i);
+                boolean matches = clause.isPhrase()
+                        ? withinSlop(prohibited.get(i).minSlop(doc, clause.getSlop()), clause.getSlop())
+                        : prohibited.get(i).containsAll(doc);
+                if (matches) return false;
+            }
+            for (int i = 0; i < requiredPhrases.size(); i++) {
+                int slop = requiredPhraseClauses.get(i).getSlop();
+                if (!withinSlop(requiredPhrases.get(i).minSlop(doc, slop), slop)) return false;
+            }
+            return true;
+        }
+
+        double phraseBoost(int doc) {
+            double boost = 0.0;
+            for (int i = 0; i < optionalPhrases.size(); i++) {
+                int slop = optionalPhraseClauses.get(i).getSlop();
+                int distance = optionalPhrases.get(i).minSlop(doc, slop);
+                if (distance >= 0) {
+                    boost += PHRASE_BOOST / (1 + Math.max(0, distance - slop));
+                }
+            }
+            return boost;
+        }
+
+        private boolean withinSlop(int distance, int slop) {
+            return distance >= 0 && distance <= slop;
+        }
+    }
+}
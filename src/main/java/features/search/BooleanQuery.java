@@ -0,0 +1,109 @@
+package features.search;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed search box input (see QueryParser): clauses of processed terms, each required (+word),
+ * prohibited (-word) or optional (plain word). Quoted text is kept together as a phrase clause,
+ * matched on term positions. A wildcard word (java*) is kept as one pattern term, expanded
+ * against the index when the query runs (see ExpandedTermIndex).
+ */
+public class BooleanQuery {
+
+    public enum Occur { REQUIRED, PROHIBITED, OPTIONAL }
+
+    @Getter
+    public static class Clause {
+        private final Occur occur;
+        private final List<String> terms; // Processed (stemmed) terms, in query order
+        private final boolean phrase;
+        // Phrases only: how far the terms may be from their exact phrase positions ("a b"~2)
+        private final int slop;
+
+        public Clause(Occur occur, List<String> terms, boolean phrase) {
+            this(occur, terms, phrase, 0);
+        }
+
+        public Clause(Occur occur, List<String> terms, boolean phrase, int slop) {
+            this.occur = occur;
+            this.terms = terms;
+            this.phrase = phrase;
+            this.slop = slop;
+        }
+    }
+
+    @Getter
+    private final List<Clause> clauses;
+
+    public BooleanQuery(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    // No operators and no quotes: a plain bag of words, scored exactly as before the query language
+    public boolean isPlain() {
+        for (Clause clause : clauses) {
+            if (clause.occur != Occur.OPTIONAL || clause.phrase) return false;
+        }
+        return true;
+    }
+
+    // Terms of every clause, prohibited ones included
+    public List<String> terms() {
+        List<String> terms = new ArrayList<>();
+        for (Clause clause : clauses) {
+            terms.addAll(clause.terms);
+        }
+        return terms;
+    }
+
+    // Terms that add to the score (required and optional clauses), repeats included
+    public List<String> scoringTerms() {
+        List<String> terms = new ArrayList<>();
+        for (Clause clause : clauses) {
+            if (clause.occur != Occur.PROHIBITED) terms.addAll(clause.terms);
+        }
+        return terms;
+    }
+
+    /**
+     * Canonical text of the parsed query: processed terms with their operators, e.g.
+     * +python -beginn "machin learn"~2. Inputs that differ only in case, punctuation, stop
+     * words or word endings give the same key. A word that processes into several terms
+     * (machine-learning) keeps what its operator means for them: required on each term, as the
+     * evaluator requires each (+machin +learn), and prohibited as a group, since only documents
+     * with all of them are excluded (-(machin learn)).
+     */
+    public String key() {
+        StringBuilder key = new StringBuilder();
+        for (Clause clause : clauses) {
+            if (key.length() > 0) key.append(' ');
+            if (clause.phrase || clause.terms.size() == 1 || clause.occur == Occur.OPTIONAL) {
+                if (clause.occur == Occur.REQUIRED) key.append('+');
+                if (clause.occur == Occur.PROHIBITED) key.append('-');
+                if (clause.phrase) key.append('"');
+                key.append(String.join(" ", clause.terms));
+                if (clause.phrase) key.append('"');
+                if (clause.slop > 0) key.append('~').append(clause.slop);
+            } else if (clause.occur == Occur.REQUIRED) {
+                for (int i = 0; i < clause.terms.size(); i++) {
+                    if (i > 0) key.append(' ');
+                    key.append('+').append(clause.terms.get(i));
+                }
+            } else {
+                key.append("-(").append(String.join(" ", clause.terms)).append(')');
+            }
+        }
+        return key.toString();
+    }
+
+    public List<Clause> clauses(Occur occur) {
+        List<Clause> matching = new ArrayList<>();
+        for (Clause clause : clauses) {
+            if (clause.occur == occur) matching.add(clause);
+        }
+        return matching;
+    }
+}
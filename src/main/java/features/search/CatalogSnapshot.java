@@ -0,0 +1,43 @@
+package features.search;
+
+import domain.Book;
+
+import java.util.Map;
+
+/**
+ * The books of the catalog as they were when ReRanker was built, by the dense ordinal of their
+ * id (DocOrdinals). ReRanker's per-book arrays (StaticScores, TitleIndex) are indexed by these
+ * ordinals. A book put in the map afterwards (IncrementalIndexer) is not the Book its slot was
+ * taken from, so ordinal() rejects it and its values are worked out from the book itself.
+ */
+final class CatalogSnapshot {
+
+    private final DocOrdinals docs;
+    private final Book[] books; // the book each slot was taken from
+
+    CatalogSnapshot(Map<Integer, Book> bookMap) {
+        docs = DocOrdinals.of(bookMap.keySet().stream().mapToInt(Integer::intValue).toArray());
+        books = new Book[docs.size()];
+        for (int ordinal = 0; ordinal < books.length; ordinal++) {
+            books[ordinal] = bookMap.get(docs.docId(ordinal));
+        }
+    }
+
+    int size() {
+        return books.length;
+    }
+
+    int docId(int ordinal) {
+        return docs.docId(ordinal);
+    }
+
+    Book book(int ordinal) {
+        return books[ordinal];
+    }
+
+    // Ordinal of the book, or -1 when its id is new or it is not the Book its slot was taken from
+    int ordinal(int docId, Book book) {
+        int ordinal = docs.ordinal(docId);
+        return ordinal >= 0 && books[ordinal] == book ? ordinal : -1;
+    }
+}
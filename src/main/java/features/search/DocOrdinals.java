@@ -0,0 +1,62 @@
+package features.search;
+
+import java.util.Arrays;
+
+/**
+ * Dense document ordinals: a document's position in the sorted list of indexed docIds, so
+ * per-document state can live in plain arrays of docCount slots. When the ids are compact
+ * (book ids normally run 1..N) they are resolved through a direct lookup table, otherwise by
+ * binary search.
+ */
+public class DocOrdinals {
+
+    // A lookup table is built when it needs at most this many slots per document (plus some slack)
+    private static final int MAX_TABLE_SLOTS_PER_DOC = 4;
+
+    private final int[] docIds;         // sorted
+    private final int[] ordinalByDocId; // -1 for gaps; null when the ids are too sparse
+
+    private DocOrdinals(int[] sortedDocIds) {
+        this.docIds = sortedDocIds;
+        int maxId = docIds.length == 0 ? -1 : docIds[docIds.length - 1];
+        boolean compact = docIds.length > 0 && docIds[0] >= 0
+                && maxId < (long) docIds.length * MAX_TABLE_SLOTS_PER_DOC + 1024;
+        if (compact) {
+            ordinalByDocId = new int[maxId + 1];
+            Arrays.fill(ordinalByDocId, -1);
+            for (int i = 0; i < docIds.length; i++) {
+                ordinalByDocId[docIds[i]] = i;
+            }
+        } else {
+            ordinalByDocId = null;
+        }
+    }
+
+    // Takes ownership of the array, which must be sorted and free of duplicates
+    public static DocOrdinals ofSorted(int[] sortedDocIds) {
+        return new DocOrdinals(sortedDocIds);
+    }
+
+    public static DocOrdinals of(int[] docIds) {
+        int[] sorted = docIds.clone();
+        Arrays.sort(sorted);
+        return new DocOrdinals(sorted);
+    }
+
+    public int size() {
+        return docIds.length;
+    }
+
+    // Ordinal of the document, or -1 when it is not indexed
+    public int ordinal(int docId) {
+        if (ordinalByDocId != null) {
+            return docId >= 0 && docId < ordinalByDocId.length ? ordinalByDocId[docId] : -1;
+        }
+        int i = Arrays.binarySearch(docIds, docId);
+        return i < 0 ? -1 : i;
+    }
+
+    public int docId(int ordinal) {
+        return docIds[ordinal];
+    }
+}
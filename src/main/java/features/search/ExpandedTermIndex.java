@@ -0,0 +1,230 @@
+package features.search;
+
+import domain.SearchIndexData;
+import utils.TfIdfCalculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SearchIndex plus one extra term per query term that stands for several index terms:
+ * wildcard patterns (java*, micro*, pyth?n) and, with fuzzy matching on, misspelled words that
+ * are not indexed (pyhton).
+ *
+ * A pattern is expanded against the sorted term dictionary: its literal prefix (the text before
+ * the first * or ?) is one ordinal range found by binary search, and only that range is matched
+ * against the full pattern. A misspelled word is expanded by LevenshteinAutomaton to the index
+ * terms closest to it. At most MAX_EXPANSIONS terms are kept, the ones in most documents.
+ *
+ * The query term then behaves as a single term whose postings are those terms merged through a
+ * heap (MergedPostingsCursor), with the idf of the merged list, so every scorer works on it
+ * unchanged. Everything else is the wrapped index.
+ */
+class ExpandedTermIndex implements SearchIndex {
+
+    static final int MAX_EXPANSIONS = 64;
+
+    private final SearchIndex delegate;
+    private final int baseTermCount;
+    private final Map<String, Integer> extraOrdinals = new LinkedHashMap<>();
+    private final List<String> extraTerms = new ArrayList<>();
+    private final List<int[]> expansions = new ArrayList<>();
+    private final List<Double> idf = new ArrayList<>();
+    private final List<Double> maxScores = new ArrayList<>();
+
+    private ExpandedTermIndex(SearchIndex delegate) {
+        this.delegate = delegate;
+        this.baseTermCount = delegate.termCount();
+    }
+
+    // The wrapped index, whose ordinals stay valid here
+    SearchIndex getDelegate() {
+        return delegate;
+    }
+
+    static boolean isPattern(String term) {
+        return term.indexOf('*') >= 0 || term.indexOf('?') >= 0;
+    }
+
+    // The index itself when no term needs expanding; fuzzy = also expand terms the index does not have
+    static SearchIndex of(SearchIndex index, Collection<String> terms, boolean fuzzy) {
+        ExpandedTermIndex expanded = null;
+        for (String term : terms) {
+            int[] expansion;
+            if (isPattern(term)) {
+                expansion = expand(index, term);
+            } else if (fuzzy && index.termOrdinal(term) < 0) {
+                expansion = LevenshteinAutomaton.expand(index, term, MAX_EXPANSIONS);
+                if (expansion.length == 0) continue; // Nothing close: stays an unknown term
+            } else {
+                continue;
+            }
+            if (expanded == null) expanded = new ExpandedTermIndex(index);
+            expanded.add(term, expansion);
+        }
+        return expanded != null ? expanded : index;
+    }
+
+    private void add(String term, int[] terms) {
+        if (extraOrdinals.containsKey(term)) return;
+        extraOrdinals.put(term, baseTermCount + extraTerms.size());
+        extraTerms.add(term);
+        expansions.add(terms);
+
+        // One pass over the merged list for its document frequency and score bound
+        int docFreq = 0;
+        double maxTfPerNorm = 0.0;
+        PostingsCursor merged = merge(terms);
+        while (merged.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+            docFreq++;
+            double norm = delegate.docNorm(merged.docId());
+            if (norm > 0) maxTfPerNorm = Math.max(maxTfPerNorm, TfIdfCalculator.tf(merged.freq()) / norm);
+        }
+        double mergedIdf = docFreq == 0 ? 0.0 : TfIdfCalculator.idf(delegate.docCount(), docFreq);
+        idf.add(mergedIdf);
+        maxScores.add(maxTfPerNorm * Math.abs(mergedIdf));
+    }
+
+    // The (ordinal, docFreq) pairs with the highest docFreq, at most max of them, as ascending ordinals
+    static int[] mostFrequent(List<int[]> matches, int max) {
+        if (matches.size() > max) {
+            matches.sort(Comparator.comparingInt((int[] m) -> -m[1]).thenComparingInt(m -> m[0]));
+            matches = matches.subList(0, max);
+        }
+        int[] ordinals = new int[matches.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = matches.get(i)[0];
+        }
+        Arrays.sort(ordinals);
+        return ordinals;
+    }
+
+    /**
+     * Ordinals (ascending) of the index terms matching the pattern: * is any run of characters,
+     * ? any one character. Empty when the pattern has no literal prefix, so a lone "*" never
+     * walks the whole dictionary.
+     */
+    static int[] expand(SearchIndex index, String pattern) {
+        int literal = 0;
+        while (literal < pattern.length() && pattern.charAt(literal) != '*' && pattern.charAt(literal) != '?') literal++;
+        if (literal == 0) return new int[0];
+        String prefix = pattern.substring(0, literal);
+
+        List<int[]> matches = new ArrayList<>(); // {ordinal, docFreq}
+        for (int ord = index.ceilingTermOrdinal(prefix); ord < index.termCount(); ord++) {
+            String term = index.term(ord);
+            if (!term.startsWith(prefix)) break;
+            if (matches(pattern, literal, term, literal)) {
+                matches.add(new int[]{ord, index.postings(ord).cost()});
+            }
+        }
+        return mostFrequent(matches, MAX_EXPANSIONS);
+    }
+
+    // Glob match of pattern[p..] against text[t..]; patterns are short, so plain backtracking will do
+    private static boolean matches(String pattern, int p, String text, int t) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            if (c == '*') {
+                for (int rest = t; rest <= text.length(); rest++) {
+                    if (matches(pattern, p + 1, text, rest)) return true;
+                }
+                return false;
+            }
+            if (t == text.length() || (c != '?' && c != text.charAt(t))) return false;
+            p++;
+            t++;
+        }
+        return t == text.length();
+    }
+
+    private PostingsCursor merge(int[] terms) {
+        PostingsCursor[] cursors = new PostingsCursor[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            cursors[i] = delegate.postings(terms[i]);
+        }
+        return new MergedPostingsCursor(cursors);
+    }
+
+    @Override
+    public int docCount() {
+        return delegate.docCount();
+    }
+
+    @Override
+    public int termCount() {
+        return baseTermCount + extraTerms.size();
+    }
+
+    @Override
+    public int termOrdinal(String term) {
+        Integer ord = extraOrdinals.get(term);
+        return ord != null ? ord : delegate.termOrdinal(term);
+    }
+
+    @Override
+    public String term(int termOrdinal) {
+        return termOrdinal < baseTermCount ? delegate.term(termOrdinal) : extraTerms.get(termOrdinal - baseTermCount);
+    }
+
+    // Expanded terms are not part of the sorted dictionary
+    @Override
+    public int ceilingTermOrdinal(String term) {
+        return delegate.ceilingTermOrdinal(term);
+    }
+
+    @Override
+    public double idf(int termOrdinal) {
+        return termOrdinal < baseTermCount ? delegate.idf(termOrdinal) : idf.get(termOrdinal - baseTermCount);
+    }
+
+    @Override
+    public PostingsCursor postings(int termOrdinal) {
+        return termOrdinal < baseTermCount ? delegate.postings(termOrdinal) : merge(expansions.get(termOrdinal - baseTermCount));
+    }
+
+    @Override
+    public double maxScore(int termOrdinal) {
+        return termOrdinal < baseTermCount ? delegate.maxScore(termOrdinal) : maxScores.get(termOrdinal - baseTermCount);
+    }
+
+    @Override
+    public int docOrdinal(int docId) {
+        return delegate.docOrdinal(docId);
+    }
+
+    @Override
+    public int docId(int docOrdinal) {
+        return delegate.docId(docOrdinal);
+    }
+
+    @Override
+    public double docNorm(int docId) {
+        return delegate.docNorm(docId);
+    }
+
+    @Override
+    public double averageDocLength() {
+        return delegate.averageDocLength();
+    }
+
+    @Override
+    public int docLength(int docId) {
+        return delegate.docLength(docId);
+    }
+
+    @Override
+    public Map<String, Double> docVector(int docId) {
+        return delegate.docVector(docId);
+    }
+
+    @Override
+    public SearchIndexData toIndexData() {
+        return delegate.toIndexData();
+    }
+}
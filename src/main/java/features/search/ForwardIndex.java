@@ -0,0 +1,76 @@
+package features.search;
+
+import utils.TfIdfCalculator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Document -> terms view of an index, rebuilt from its postings for indexes that do not store
+ * TF-IDF vectors. Each document keeps only (term ordinal, freq) pairs; weights are computed
+ * from the index's current IDF when a vector is asked for.
+ */
+public class ForwardIndex {
+
+    private final SearchIndex index;
+    private final int[] docIds;      // sorted
+    private final int[] starts;      // doc i owns [starts[i], starts[i + 1])
+    private final int[] ordinals;
+    private final int[] freqs;
+
+    private ForwardIndex(SearchIndex index, int[] docIds, int[] starts, int[] ordinals, int[] freqs) {
+        this.index = index;
+        this.docIds = docIds;
+        this.starts = starts;
+        this.ordinals = ordinals;
+        this.freqs = freqs;
+    }
+
+    // Two passes over all postings: one to size every document, one to fill it
+    public static ForwardIndex build(SearchIndex index) {
+        Map<Integer, Integer> termCounts = new HashMap<>();
+        int total = 0;
+        for (int ord = 0; ord < index.termCount(); ord++) {
+            PostingsCursor cursor = index.postings(ord);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                termCounts.merge(cursor.docId(), 1, Integer::sum);
+                total++;
+            }
+        }
+
+        int[] docIds = termCounts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] starts = new int[docIds.length + 1];
+        for (int i = 0; i < docIds.length; i++) {
+            starts[i + 1] = starts[i] + termCounts.get(docIds[i]);
+        }
+
+        // Ordinals are visited in increasing order, so every document's terms end up sorted
+        int[] fill = Arrays.copyOf(starts, docIds.length);
+        int[] ordinals = new int[total];
+        int[] freqs = new int[total];
+        for (int ord = 0; ord < index.termCount(); ord++) {
+            PostingsCursor cursor = index.postings(ord);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                int slot = fill[Arrays.binarySearch(docIds, cursor.docId())]++;
+                ordinals[slot] = ord;
+                freqs[slot] = cursor.freq();
+            }
+        }
+        return new ForwardIndex(index, docIds, starts, ordinals, freqs);
+    }
+
+    // TF-IDF weight of each of the document's terms, empty for unknown documents
+    public Map<String, Double> vector(int docId) {
+        int i = Arrays.binarySearch(docIds, docId);
+        if (i < 0) return Map.of();
+
+        Map<String, Double> vector = new LinkedHashMap<>();
+        for (int slot = starts[i]; slot < starts[i + 1]; slot++) {
+            int ord = ordinals[slot];
+            vector.put(index.term(ord), TfIdfCalculator.tf(freqs[slot]) * index.idf(ord));
+        }
+        return vector;
+    }
+}
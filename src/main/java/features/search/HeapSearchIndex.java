@@ -0,0 +1,185 @@
+package features.search;
+
+import domain.Posting;
+import domain.SearchIndexData;
+import utils.TfIdfCalculator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SearchIndex over the maps of a SearchIndexData (the JSON index format).
+ * Term ordinals come from a dictionary taken when the index is created, so later edits to
+ * the SearchIndexData need a new HeapSearchIndex.
+ */
+public class HeapSearchIndex implements SearchIndex {
+
+    private final SearchIndexData indexData;
+    private final TermDictionary dictionary;
+    private final List<List<Posting>> postingsByOrdinal;
+    private final double[] idf;
+    private final double[] maxScores;
+    private final Map<Integer, Double> docNorms;
+    private final Map<Integer, Integer> docLengths;
+    private final double averageDocLength;
+    private final DocOrdinals docOrdinals;
+
+    public HeapSearchIndex(SearchIndexData indexData) {
+        this.indexData = indexData;
+        Map<String, List<Posting>> invertedIndex = indexData.getInvertedIndex();
+        this.dictionary = TermDictionary.of(invertedIndex.keySet());
+        this.postingsByOrdinal = new ArrayList<>(dictionary.size());
+        this.idf = new double[dictionary.size()];
+        for (int ord = 0; ord < dictionary.size(); ord++) {
+            String term = dictionary.term(ord);
+            postingsByOrdinal.add(invertedIndex.get(term));
+            idf[ord] = indexData.getIdfScores().getOrDefault(term, 0.0);
+        }
+
+        // Indexes saved before norms and lengths were persisted get them computed once here
+        this.docNorms = indexData.getDocNorms() != null
+                ? indexData.getDocNorms() : TfIdfCalculator.docNorms(indexData.getTfIdfVectors());
+        this.docLengths = indexData.getDocLengths() != null
+                ? indexData.getDocLengths() : TfIdfCalculator.docLengths(invertedIndex);
+
+        this.docOrdinals = DocOrdinals.of(docNorms.keySet().stream().mapToInt(Integer::intValue).toArray());
+        long totalLength = 0;
+        for (int docId : docNorms.keySet()) {
+            totalLength += docLengths.getOrDefault(docId, 0);
+        }
+        this.averageDocLength = docNorms.isEmpty() ? 0.0 : (double) totalLength / docNorms.size();
+
+        this.maxScores = new double[dictionary.size()];
+        for (int ord = 0; ord < maxScores.length; ord++) {
+            maxScores[ord] = TfIdfCalculator.maxScore(postingsByOrdinal.get(ord), idf[ord], docNorms);
+        }
+    }
+
+    @Override
+    public int docCount() {
+        return docNorms.size();
+    }
+
+    @Override
+    public int termCount() {
+        return dictionary.size();
+    }
+
+    @Override
+    public int termOrdinal(String term) {
+        return dictionary.ordinal(term);
+    }
+
+    @Override
+    public String term(int termOrdinal) {
+        return dictionary.term(termOrdinal);
+    }
+
+    @Override
+    public int ceilingTermOrdinal(String term) {
+        return dictionary.ceiling(term);
+    }
+
+    @Override
+    public double idf(int termOrdinal) {
+        return idf[termOrdinal];
+    }
+
+    @Override
+    public PostingsCursor postings(int termOrdinal) {
+        return new ListPostingsCursor(postingsByOrdinal.get(termOrdinal));
+    }
+
+    @Override
+    public double maxScore(int termOrdinal) {
+        return maxScores[termOrdinal];
+    }
+
+    @Override
+    public int docOrdinal(int docId) {
+        return docOrdinals.ordinal(docId);
+    }
+
+    @Override
+    public int docId(int docOrdinal) {
+        return docOrdinals.docId(docOrdinal);
+    }
+
+    @Override
+    public double docNorm(int docId) {
+        return docNorms.getOrDefault(docId, 0.0);
+    }
+
+    @Override
+    public double averageDocLength() {
+        return averageDocLength;
+    }
+
+    @Override
+    public int docLength(int docId) {
+        return docLengths.getOrDefault(docId, 0);
+    }
+
+    @Override
+    public Map<String, Double> docVector(int docId) {
+        return indexData.getTfIdfVectors().getOrDefault(docId, Map.of());
+    }
+
+    @Override
+    public SearchIndexData toIndexData() {
+        return indexData;
+    }
+
+    private static class ListPostingsCursor implements PostingsCursor {
+        private final List<Posting> postings;
+        private int index = -1;
+        private int positionIndex;
+
+        ListPostingsCursor(List<Posting> postings) {
+            this.postings = postings;
+        }
+
+        @Override
+        public int nextDoc() {
+            positionIndex = 0;
+            return ++index < postings.size() ? postings.get(index).getDocId() : NO_MORE_DOCS;
+        }
+
+        // Binary search over the rest of the list
+        @Override
+        public int advance(int target) {
+            int doc = docId();
+            if (doc >= target) return doc;
+            int low = index + 1, high = postings.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (postings.get(mid).getDocId() < target) low = mid + 1;
+                else high = mid - 1;
+            }
+            index = low - 1;
+            return nextDoc();
+        }
+
+        @Override
+        public int docId() {
+            if (index < 0) return -1;
+            return index < postings.size() ? postings.get(index).getDocId() : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int freq() {
+            return postings.get(index).getFreq();
+        }
+
+        @Override
+        public int nextPosition() {
+            return postings.get(index).getPositions().get(positionIndex++);
+        }
+
+        @Override
+        public int cost() {
+            return postings.size();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package features.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.Book;
+import domain.JournalEntry;
+import domain.Posting;
+import domain.SearchIndexData;
+import storage.BinaryIndexWriter;
+import storage.IndexJournal;
+import utils.TextProcessor;
+import utils.TfIdfCalculator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds, replaces and deletes single books in a live SearchIndexData without a full reindex.
+ *
+ * Only the posting lists and document vectors of the changed book are touched right away.
+ * Other documents sharing its terms keep their old weights until the next commit, which
+ * recomputes IDF for the touched terms in one batch. Every change is written to the journal
+ * first, so after a crash replayJournal() restores it.
+ *
+ * Not thread-safe: callers must not search while a change is being applied.
+ */
+public class IncrementalIndexer {
+
+    // Touched terms are re-weighted once this many changes have piled up
+    private static final int BATCH_SIZE = 64;
+    // All IDFs are refreshed once the document count drifts this far from the count they were computed with
+    private static final double MAX_DOC_COUNT_DRIFT = 0.05;
+
+    private final SearchIndexData indexData;
+    private final Map<String, List<Posting>> invertedIndex;
+    private final Map<Integer, Map<String, Double>> tfIdfVectors;
+    private final Map<String, Double> idfScores;
+    private final Map<Integer, Double> docNorms;
+    private final Map<Integer, Integer> docLengths;
+    private final IndexBuilder analyzer;
+    private final IndexJournal journal;
+    private final Map<Integer, Book> bookMap; // Kept in sync when given, may be null
+
+    private final Set<String> dirtyTerms = new HashSet<>();
+    private int pendingChanges;
+    private int idfDocCount;
+
+    public IncrementalIndexer(SearchIndexData indexData, TextProcessor textProcessor,
+                              IndexJournal journal, Map<Integer, Book> bookMap) {
+        this.indexData = indexData;
+        this.invertedIndex = indexData.getInvertedIndex();
+        this.tfIdfVectors = indexData.getTfIdfVectors();
+        this.idfScores = indexData.getIdfScores();
+
+        // Indexes saved before norms and lengths were persisted get them filled in here
+        if (indexData.getDocNorms() == null) {
+            indexData.setDocNorms(TfIdfCalculator.docNorms(tfIdfVectors));
+        }
+        if (indexData.getDocLengths() == null) {
+            indexData.setDocLengths(TfIdfCalculator.docLengths(invertedIndex));
+        }
+        this.docNorms = indexData.getDocNorms();
+        this.docLengths = indexData.getDocLengths();
+        this.analyzer = new IndexBuilder(textProcessor);
+        this.journal = journal;
+        this.bookMap = bookMap;
+        this.idfDocCount = tfIdfVectors.size();
+    }
+
+    public void addOrUpdate(Book book) throws IOException {
+        journal.append(new JournalEntry(JournalEntry.UPSERT, book.getBookId(), book));
+        applyUpsert(book);
+        afterChange();
+    }
+
+    public void delete(int bookId) throws IOException {
+        journal.append(new JournalEntry(JournalEntry.DELETE, bookId, null));
+        applyDelete(bookId);
+        afterChange();
+    }
+
+    /**
+     * Re-applies every change recorded since the last checkpoint.
+     * Upserts and deletes are idempotent, so replaying onto an index that already contains
+     * some of them is safe.
+     */
+    public int replayJournal() {
+        List<JournalEntry> entries = journal.readAll();
+        for (JournalEntry entry : entries) {
+            if (JournalEntry.DELETE.equals(entry.getOp())) {
+                applyDelete(entry.getBookId());
+            } else if (entry.getBook() != null) {
+                applyUpsert(entry.getBook());
+            }
+        }
+        commit();
+        return entries.size();
+    }
+
+    /**
+     * Recomputes IDF and TF-IDF weights for every term touched since the last commit,
+     * and the norms of the documents whose vectors changed as a result.
+     */
+    public void commit() {
+        int docCount = tfIdfVectors.size();
+
+        // IDFs of untouched terms still use idfDocCount, so touched terms do too; otherwise
+        // their weights would be on a different scale. Only a large drift justifies a full refresh.
+        Collection<String> terms = dirtyTerms;
+        if (Math.abs(docCount - idfDocCount) > MAX_DOC_COUNT_DRIFT * idfDocCount) {
+            idfDocCount = docCount;
+            terms = invertedIndex.keySet();
+        }
+
+        Set<Integer> changedDocs = new HashSet<>();
+        for (String term : terms) {
+            List<Posting> postings = invertedIndex.get(term);
+            if (postings == null) continue;
+
+            double idf = TfIdfCalculator.idf(Math.max(idfDocCount, 1), postings.size());
+            idfScores.put(term, idf);
+            for (Posting posting : postings) {
+                tfIdfVectors.get(posting.getDocId()).put(term, TfIdfCalculator.tf(posting.getFreq()) * idf);
+                changedDocs.add(posting.getDocId());
+            }
+        }
+        for (int docId : changedDocs) {
+            docNorms.put(docId, TfIdfCalculator.norm(tfIdfVectors.get(docId)));
+        }
+
+        dirtyTerms.clear();
+        pendingChanges = 0;
+    }
+
+    /**
+     * Commits, saves the index in the binary format IndexLoader maps (index.bin), and the book
+     * list when a bookMap is attached, then empties the journal.
+     * Files are written to a temp file first and moved into place, so a crash leaves either
+     * the old or the new file, and the journal still covers the difference.
+     */
+    public void checkpoint(File indexFile, File bookFile) throws IOException {
+        commit();
+
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        BinaryIndexWriter.write(indexData, tmp);
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (bookMap != null && bookFile != null) {
+            List<Book> books = new ArrayList<>(bookMap.values());
+            books.sort(Comparator.comparingInt(Book::getBookId));
+            writeAtomically(new ObjectMapper(), bookFile, books);
+        }
+
+        journal.clear();
+    }
+
+    /**
+     * Startup recovery: replays the changes journaled since the last checkpoint onto index, then
+     * checkpoints to index.bin and book.json in dataDir, so the next start maps the saved index
+     * instead of replaying the same changes again. Returns the index to search: the given one
+     * when there was nothing to replay. If the checkpoint cannot be written the replayed index is
+     * still returned, and the journal is kept for the next start.
+     */
+    public static SearchIndex recover(SearchIndex index, IndexJournal journal, TextProcessor textProcessor,
+                                      Map<Integer, Book> bookMap, File dataDir) {
+        if (journal.isEmpty()) return index;
+
+        // Replaying needs the editable in-memory form, so a mapped index is materialized first
+        SearchIndexData editableData = index.toIndexData();
+        IncrementalIndexer indexer = new IncrementalIndexer(editableData, textProcessor, journal, bookMap);
+        int replayed = indexer.replayJournal();
+        System.out.println("Replayed " + replayed + " pending index changes.");
+        try {
+            indexer.checkpoint(new File(dataDir, "index.bin"), new File(dataDir, "book.json"));
+            System.out.println("Saved the index with those changes; journal cleared.");
+        } catch (IOException e) {
+            System.err.println("Could not checkpoint the index, the journal is kept: " + e.getMessage());
+        }
+        return PackedSearchIndex.from(editableData);
+    }
+
+    private void applyUpsert(Book book) {
+        int docId = book.getBookId();
+        removeDocument(docId);
+
+        Map<String, Double> docVector = new HashMap<>();
+        int length = 0;
+        for (Map.Entry<String, List<Integer>> entry : analyzer.analyze(book).entrySet()) {
+            String term = entry.getKey();
+            List<Integer> positions = entry.getValue();
+
+            List<Posting> postings = invertedIndex.computeIfAbsent(term, k -> new ArrayList<>());
+            postings.add(insertionPoint(postings, docId), new Posting(docId, positions.size(), positions));
+
+            // Provisional weight until the next commit; brand-new terms get an IDF right away so they are searchable
+            double idf = idfScores.computeIfAbsent(term,
+                    k -> TfIdfCalculator.idf(Math.max(idfDocCount, 1), postings.size()));
+            docVector.put(term, TfIdfCalculator.tf(positions.size()) * idf);
+            dirtyTerms.add(term);
+            length += positions.size();
+        }
+        tfIdfVectors.put(docId, docVector);
+        docNorms.put(docId, TfIdfCalculator.norm(docVector));
+        docLengths.put(docId, length);
+
+        if (bookMap != null) bookMap.put(docId, book);
+    }
+
+    private void applyDelete(int bookId) {
+        removeDocument(bookId);
+        if (bookMap != null) bookMap.remove(bookId);
+    }
+
+    // Tombstones a document: its postings and vector disappear, its terms are marked for re-weighting
+    private void removeDocument(int docId) {
+        Map<String, Double> oldVector = tfIdfVectors.remove(docId);
+        if (oldVector == null) return;
+        docNorms.remove(docId);
+        docLengths.remove(docId);
+
+        for (String term : oldVector.keySet()) {
+            List<Posting> postings = invertedIndex.get(term);
+            if (postings == null) continue;
+
+            int index = insertionPoint(postings, docId);
+            if (index < postings.size() && postings.get(index).getDocId() == docId) {
+                postings.remove(index);
+            }
+
+            if (postings.isEmpty()) {
+                invertedIndex.remove(term);
+                idfScores.remove(term);
+                dirtyTerms.remove(term);
+            } else {
+                dirtyTerms.add(term);
+            }
+        }
+    }
+
+    private void afterChange() {
+        if (++pendingChanges >= BATCH_SIZE) {
+            commit();
+        }
+    }
+
+    // Binary search for the first posting whose docId is >= docId (posting lists are docId-ordered)
+    private static int insertionPoint(List<Posting> postings, int docId) {
+        int low = 0, high = postings.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.get(mid).getDocId() < docId) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static void writeAtomically(ObjectMapper mapper, File target, Object value) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        mapper.writeValue(tmp, value);
+        Files.move(tmp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
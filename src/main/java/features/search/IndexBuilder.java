@@ -16,12 +16,31 @@ public class IndexBuilder {
     private final TextProcessor textProcessor;
 
     public IndexBuilder(TextProcessor textProcessor) {
+        this(textProcessor, new HashMap<>());
+    }
+
+    // Lets the parallel builder collect a partial index into an insertion-ordered map,
+    // so merged partials keep the exact term order of a sequential build.
+    IndexBuilder(TextProcessor textProcessor, Map<String, List<Posting>> invertedIndex) {
         this.textProcessor = textProcessor;
-        this.invertedIndex = new HashMap<>();
+        this.invertedIndex = invertedIndex;
     }
 
     public void indexDocument(Book book) {
+        Map<String, List<Integer>> termPositions = analyze(book);
+        for (Map.Entry<String, List<Integer>> entry : termPositions.entrySet()) {
+            String term = entry.getKey();
+            List<Integer> positions = entry.getValue();
 
+            Posting posting = new Posting(book.getBookId(), positions.size(), positions);
+
+            invertedIndex.computeIfAbsent(term, k -> new ArrayList<>()).add(posting);
+        }
+
+    }
+
+    // Stems all searchable fields of a book and records the positions of every term
+    Map<String, List<Integer>> analyze(Book book) {
         String bookData = book.getTitle() + " " +
                 book.getAuthor() + " " +
                 book.getDescription() + " " +
@@ -35,15 +54,7 @@ public class IndexBuilder {
             String term = stemmedTokens.get(pos);
             termPositions.computeIfAbsent(term, k -> new ArrayList<>()).add(pos);
         }
-        for (Map.Entry<String, List<Integer>> entry : termPositions.entrySet()) {
-            String term = entry.getKey();
-            List<Integer> positions = entry.getValue();
-
-            Posting posting = new Posting(book.getBookId(), positions.size(), positions);
-
-            invertedIndex.computeIfAbsent(term, k -> new ArrayList<>()).add(posting);
-        }
-
+        return termPositions;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package features.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accepts the strings within maxEdits insertions, deletions or substitutions of one word.
+ * A state is a row of the edit-distance table (distance of the word's prefixes to the input read
+ * so far); it can still lead to a match while its smallest entry is within maxEdits.
+ *
+ * expand() intersects the automaton with the sorted term dictionary: terms are walked in order,
+ * the rows of the prefix shared with the previous term are kept, and when a prefix can no longer
+ * match, every term starting with it is skipped with a single ceilingTermOrdinal seek.
+ */
+class LevenshteinAutomaton {
+
+    private final String word;
+    private final int maxEdits;
+
+    LevenshteinAutomaton(String word, int maxEdits) {
+        this.word = word;
+        this.maxEdits = maxEdits;
+    }
+
+    // Edits allowed for a word: none below 3 characters, 1 up to 5, then 2
+    static int maxEdits(String word) {
+        int length = word.length();
+        return length < 3 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Ordinals (ascending) of the index terms closest to the word, within maxEdits(word): only
+     * the smallest distance found is kept (a 1-edit match beats every 2-edit one), and at most
+     * max terms, the ones in most documents. Empty when the word is too short or nothing is close.
+     */
+    static int[] expand(SearchIndex index, String word, int max) {
+        int maxEdits = maxEdits(word);
+        if (maxEdits == 0) return new int[0];
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, maxEdits);
+
+        List<int[]> matches = new ArrayList<>(); // {ordinal, docFreq}
+        int best = maxEdits + 1;
+        // rows[i]: state after the first i characters of path, reused from term to term. A prefix
+        // more than maxEdits longer than the word is dead, so no deeper row is ever needed
+        int[][] rows = new int[word.length() + maxEdits + 2][];
+        rows[0] = automaton.start();
+        String path = "";
+        int pathRows = 0; // rows[0..pathRows] are valid for path
+
+        int ord = 0;
+        while (ord < index.termCount()) {
+            String term = index.term(ord);
+            int depth = Math.min(commonPrefix(path, term), pathRows);
+            int limit = Math.min(best, maxEdits);
+            path = term;
+            if (Math.abs(term.length() - word.length()) > limit) {
+                // Too long or too short to be close: only its shared rows stay valid
+                pathRows = depth;
+                ord++;
+                continue;
+            }
+
+            // Extend the shared rows along the term until it matches or its prefix is dead; once a
+            // match is found, prefixes that can only reach farther ones are dead too
+            int dead = -1;
+            while (depth < term.length()) {
+                if (rows[depth + 1] == null) rows[depth + 1] = new int[word.length() + 1];
+                int closest = automaton.step(rows[depth], term.charAt(depth), rows[depth + 1]);
+                depth++;
+                if (closest > limit) {
+                    dead = depth;
+                    break;
+                }
+            }
+            pathRows = depth;
+
+            if (dead >= 0) {
+                // No term starting with this prefix can match: seek past all of them
+                String after = term.substring(0, dead - 1) + (char) (term.charAt(dead - 1) + 1);
+                ord = Math.max(ord + 1, index.ceilingTermOrdinal(after));
+                continue;
+            }
+
+            int distance = automaton.distance(rows[term.length()]);
+            if (distance <= maxEdits) {
+                if (distance < best) {
+                    best = distance;
+                    matches.clear();
+                }
+                if (distance == best) matches.add(new int[]{ord, index.postings(ord).cost()});
+            }
+            ord++;
+        }
+        return ExpandedTermIndex.mostFrequent(matches, max);
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    // Distances of the word's prefixes to the empty input
+    int[] start() {
+        int[] row = new int[word.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        return row;
+    }
+
+    // Writes the state after reading c into next and returns its smallest distance
+    int step(int[] row, char c, int[] next) {
+        next[0] = row[0] + 1;
+        int closest = next[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitution = row[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+            next[i] = Math.min(substitution, Math.min(row[i] + 1, next[i - 1] + 1));
+            closest = Math.min(closest, next[i]);
+        }
+        return closest;
+    }
+
+    // Edit distance of the input read so far to the whole word
+    int distance(int[] row) {
+        return row[row.length - 1];
+    }
+}
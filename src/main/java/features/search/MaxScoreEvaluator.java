@@ -0,0 +1,118 @@
+package features.search;
+
+import domain.SearchResult;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Top-k evaluation of an OR query with MaxScore dynamic pruning.
+ *
+ * Each query term has an upper bound on what it can add to a document's score (from
+ * Similarity.maxScore: SearchIndex.maxScore for cosine). Terms are ordered by bound; once the k-th best score so far beats the
+ * summed bounds of the weakest terms, those terms become non-essential: a document found only
+ * in them cannot make the top-k. Candidates are then drawn from the essential terms alone, and
+ * non-essential cursors are only advanced to those candidates while the document can still win.
+ *
+ * Contributions are summed in query-term order, as in QueryProcessor's exhaustive loop, so every
+ * score that is computed is bit-identical and so is the resulting top-k.
+ */
+class MaxScoreEvaluator {
+
+    // Headroom on every bound comparison, so rounding never prunes a document that belongs in the top-k
+    private static final double SLACK = 1e-9;
+
+    private MaxScoreEvaluator() {}
+
+    static List<SearchResult> topK(SearchIndex index, Similarity similarity, QueryVector queryVector, int k) {
+        return topK(index, similarity, queryVector, k, QueryBudget.unlimited());
+    }
+
+    // Same, returning the top-k found so far once the budget is spent (one posting per term a candidate is scored on)
+    static List<SearchResult> topK(SearchIndex index, Similarity similarity, QueryVector queryVector, int k,
+                                   QueryBudget budget) {
+        TopKCollector topK = new TopKCollector(k, Comparator.naturalOrder());
+        int size = queryVector.size;
+        int[] ordinals = queryVector.ordinals;
+        double[] weights = queryVector.weights;
+        double queryNorm = similarity.queryNorm(index, queryVector);
+        if (k <= 0 || queryNorm == 0.0) return topK.results();
+
+        PostingsCursor[] cursors = new PostingsCursor[size];
+        double[] idf = new double[size];
+        double[] bounds = new double[size];
+        for (int i = 0; i < size; i++) {
+            cursors[i] = index.postings(ordinals[i]);
+            cursors[i].nextDoc();
+            idf[i] = index.idf(ordinals[i]);
+            bounds[i] = similarity.maxScore(index, ordinals[i], weights[i], queryNorm);
+        }
+
+        // Terms by increasing bound; boundSums[j] is the summed bound of the j weakest terms
+        int[] order = new int[size];
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) boxed[i] = i;
+        Arrays.sort(boxed, Comparator.comparingDouble(i -> bounds[i]));
+        double[] boundSums = new double[size + 1];
+        for (int j = 0; j < size; j++) {
+            order[j] = boxed[j];
+            boundSums[j + 1] = boundSums[j] + bounds[order[j]];
+        }
+
+        double[] contributions = new double[size];
+        int firstEssential = 0;
+        while (true) {
+            double threshold = topK.threshold();
+            while (firstEssential < size && boundSums[firstEssential + 1] + SLACK < threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == size) break; // No unseen document can make it any more
+
+            // Next candidate: the smallest docId among the essential terms
+            int doc = PostingsCursor.NO_MORE_DOCS;
+            for (int j = firstEssential; j < size; j++) {
+                doc = Math.min(doc, cursors[order[j]].docId());
+            }
+            if (doc == PostingsCursor.NO_MORE_DOCS) break;
+            if (!budget.visit(size - firstEssential)) break;
+
+            Arrays.fill(contributions, 0.0);
+            double dot = 0.0;
+            for (int j = firstEssential; j < size; j++) {
+                int t = order[j];
+                if (cursors[t].docId() == doc) {
+                    contributions[t] = weights[t] * similarity.docWeight(index, doc, cursors[t].freq(), idf[t]);
+                    dot += contributions[t];
+                    cursors[t].nextDoc();
+                }
+            }
+
+            // Non-essential terms, strongest first, while the document can still reach the threshold
+            boolean competitive = true;
+            for (int j = firstEssential - 1; j >= 0; j--) {
+                if (similarity.score(index, doc, dot, queryNorm) + boundSums[j + 1] + SLACK < threshold) {
+                    competitive = false;
+                    break;
+                }
+                int t = order[j];
+                if (cursors[t].advance(doc) == doc) {
+                    contributions[t] = weights[t] * similarity.docWeight(index, doc, cursors[t].freq(), idf[t]);
+                    dot += contributions[t];
+                }
+            }
+            if (!competitive) continue;
+
+            // Exact dot product, summed in query-term order like the exhaustive loop
+            dot = 0.0;
+            for (int t = 0; t < size; t++) {
+                dot += contributions[t];
+            }
+            double score = similarity.score(index, doc, dot, queryNorm);
+            if (score > 0 && topK.competes(score)) {
+                topK.offer(new SearchResult(doc, score));
+            }
+        }
+        return topK.results();
+    }
+}
@@ -0,0 +1,124 @@
+package features.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Union of several posting lists as one cursor, e.g. every term a wildcard expanded to.
+ * The sub-cursors sit in a min-heap on their current docId: each step pops the ones on the
+ * smallest document, so the union is produced in docId order without collecting it in a set.
+ * freq() is the summed freq of the sub-cursors on the document and positions come merged in
+ * increasing order.
+ */
+class MergedPostingsCursor implements PostingsCursor {
+
+    private final PostingsCursor[] subs;
+    private final PriorityQueue<PostingsCursor> heap;
+    private final PostingsCursor[] current; // Sub-cursors on the current document
+    private int currentCount;
+    private final int cost;
+    private boolean started;
+    private int doc = -1;
+    private int freq;
+
+    private int[] positions = new int[8];
+    private int positionCount = -1; // -1: not gathered yet for the current document
+    private int positionAt;
+
+    MergedPostingsCursor(PostingsCursor[] subs) {
+        this.subs = subs;
+        this.heap = new PriorityQueue<>(Math.max(1, subs.length), Comparator.comparingInt(PostingsCursor::docId));
+        this.current = new PostingsCursor[subs.length];
+        int cost = 0;
+        for (PostingsCursor sub : subs) {
+            cost += sub.cost();
+        }
+        this.cost = cost;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (!started) {
+            started = true;
+            for (PostingsCursor sub : subs) {
+                if (sub.nextDoc() != NO_MORE_DOCS) heap.add(sub);
+            }
+        } else {
+            for (int i = 0; i < currentCount; i++) {
+                if (current[i].nextDoc() != NO_MORE_DOCS) heap.add(current[i]);
+            }
+        }
+        return popCurrent();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (doc >= target) return doc;
+        if (!started) {
+            started = true;
+            for (PostingsCursor sub : subs) {
+                if (sub.advance(target) != NO_MORE_DOCS) heap.add(sub);
+            }
+        } else {
+            for (int i = 0; i < currentCount; i++) {
+                if (current[i].advance(target) != NO_MORE_DOCS) heap.add(current[i]);
+            }
+            while (!heap.isEmpty() && heap.peek().docId() < target) {
+                PostingsCursor behind = heap.poll();
+                if (behind.advance(target) != NO_MORE_DOCS) heap.add(behind);
+            }
+        }
+        return popCurrent();
+    }
+
+    // Takes every sub-cursor on the smallest docId off the heap
+    private int popCurrent() {
+        currentCount = 0;
+        freq = 0;
+        positionCount = -1;
+        if (heap.isEmpty()) {
+            doc = NO_MORE_DOCS;
+            return doc;
+        }
+        doc = heap.peek().docId();
+        while (!heap.isEmpty() && heap.peek().docId() == doc) {
+            PostingsCursor sub = heap.poll();
+            current[currentCount++] = sub;
+            freq += sub.freq();
+        }
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return doc;
+    }
+
+    @Override
+    public int freq() {
+        return freq;
+    }
+
+    @Override
+    public int nextPosition() {
+        if (positionCount < 0) {
+            if (positions.length < freq) positions = new int[Math.max(freq, positions.length * 2)];
+            positionCount = 0;
+            for (int i = 0; i < currentCount; i++) {
+                for (int j = 0; j < current[i].freq(); j++) {
+                    positions[positionCount++] = current[i].nextPosition();
+                }
+            }
+            Arrays.sort(positions, 0, positionCount);
+            positionAt = 0;
+        }
+        return positions[positionAt++];
+    }
+
+    // Summed document frequencies: an upper bound, documents in several lists count more than once
+    @Override
+    public int cost() {
+        return cost;
+    }
+}
@@ -0,0 +1,248 @@
+package features.search;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import domain.Posting;
+import domain.SearchIndexData;
+import lombok.Getter;
+import utils.TfIdfCalculator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only SearchIndex over a PostingStore. Jackson reads the JSON index format straight into it:
+ * postings go to flat int arrays and the TF-IDF vectors are reduced to one norm per document
+ * while parsing, so neither Posting objects nor the per-document maps are ever built.
+ * The IDF table is a double[] indexed by term ordinal; the only term Strings kept are the
+ * ones in the dictionary.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PackedSearchIndex implements SearchIndex {
+
+    @Getter
+    private final PostingStore postingStore;
+    private final TermDictionary dictionary;
+    private final double[] idf;
+    private final double[] maxScores;
+    // Per-document stats, sorted by docId
+    private final int[] docIds;
+    private final DocOrdinals docOrdinals;
+    private final double[] docNorms;
+    private final int[] docLengths;
+    private final double averageDocLength;
+    private volatile ForwardIndex forwardIndex; // Built on the first docVector call
+
+    private PackedSearchIndex(PostingStore postingStore, Map<String, Double> idfScores,
+                              Map<Integer, Double> norms, Map<Integer, Integer> lengths) {
+        this.postingStore = postingStore;
+        this.dictionary = postingStore.getDictionary();
+        this.idf = new double[dictionary.size()];
+        for (int ord = 0; ord < idf.length; ord++) {
+            idf[ord] = idfScores.getOrDefault(dictionary.term(ord), 0.0);
+        }
+
+        this.docIds = norms.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.docOrdinals = DocOrdinals.ofSorted(docIds);
+        this.docNorms = new double[docIds.length];
+        this.docLengths = new int[docIds.length];
+        for (int i = 0; i < docIds.length; i++) {
+            docNorms[i] = norms.get(docIds[i]);
+            docLengths[i] = lengths.getOrDefault(docIds[i], 0);
+        }
+        this.averageDocLength = docIds.length == 0 ? 0.0 : (double) Arrays.stream(docLengths).asLongStream().sum() / docIds.length;
+
+        this.maxScores = new double[idf.length];
+        for (int ord = 0; ord < maxScores.length; ord++) {
+            PostingsCursor cursor = postingStore.postings(ord);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                double norm = docNorm(cursor.docId());
+                if (norm > 0) {
+                    maxScores[ord] = Math.max(maxScores[ord], TfIdfCalculator.tf(cursor.freq()) * Math.abs(idf[ord]) / norm);
+                }
+            }
+        }
+    }
+
+    /**
+     * Jackson entry point. Indexes saved before docNorms/docLengths were persisted still load:
+     * norms then come from the TF-IDF vectors (reduced while parsing) and lengths from the postings.
+     */
+    @JsonCreator
+    static PackedSearchIndex fromJson(@JsonProperty("invertedIndex") PostingStore postingStore,
+                                      @JsonProperty("idfScores") Map<String, Double> idfScores,
+                                      @JsonProperty("docNorms") Map<Integer, Double> docNorms,
+                                      @JsonProperty("docLengths") Map<Integer, Integer> docLengths,
+                                      @JsonProperty("tfIdfVectors") @JsonDeserialize(using = VectorNormsReader.class)
+                                      Map<Integer, Double> vectorNorms) {
+        return new PackedSearchIndex(postingStore, idfScores,
+                docNorms != null ? docNorms : vectorNorms,
+                docLengths != null ? docLengths : postingLengths(postingStore));
+    }
+
+    // Packs an index built in memory (IndexBuilder + TfIdfCalculator output)
+    public static PackedSearchIndex from(SearchIndexData indexData) {
+        return new PackedSearchIndex(PostingStore.from(indexData.getInvertedIndex()), indexData.getIdfScores(),
+                indexData.getDocNorms() != null
+                        ? indexData.getDocNorms() : TfIdfCalculator.docNorms(indexData.getTfIdfVectors()),
+                indexData.getDocLengths() != null
+                        ? indexData.getDocLengths() : TfIdfCalculator.docLengths(indexData.getInvertedIndex()));
+    }
+
+    private static Map<Integer, Integer> postingLengths(PostingStore postingStore) {
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (int ord = 0; ord < postingStore.termCount(); ord++) {
+            PostingsCursor cursor = postingStore.postings(ord);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                lengths.merge(cursor.docId(), cursor.freq(), Integer::sum);
+            }
+        }
+        return lengths;
+    }
+
+    @Override
+    public int docCount() {
+        return docIds.length;
+    }
+
+    @Override
+    public int termCount() {
+        return postingStore.termCount();
+    }
+
+    @Override
+    public int termOrdinal(String term) {
+        return dictionary.ordinal(term);
+    }
+
+    @Override
+    public String term(int termOrdinal) {
+        return dictionary.term(termOrdinal);
+    }
+
+    @Override
+    public int ceilingTermOrdinal(String term) {
+        return dictionary.ceiling(term);
+    }
+
+    @Override
+    public double idf(int termOrdinal) {
+        return idf[termOrdinal];
+    }
+
+    @Override
+    public PostingsCursor postings(int termOrdinal) {
+        return postingStore.postings(termOrdinal);
+    }
+
+    @Override
+    public double maxScore(int termOrdinal) {
+        return maxScores[termOrdinal];
+    }
+
+    @Override
+    public int docOrdinal(int docId) {
+        return docOrdinals.ordinal(docId);
+    }
+
+    @Override
+    public int docId(int docOrdinal) {
+        return docIds[docOrdinal];
+    }
+
+    @Override
+    public double docNorm(int docId) {
+        int i = docOrdinals.ordinal(docId);
+        return i < 0 ? 0.0 : docNorms[i];
+    }
+
+    @Override
+    public double averageDocLength() {
+        return averageDocLength;
+    }
+
+    @Override
+    public int docLength(int docId) {
+        int i = docOrdinals.ordinal(docId);
+        return i < 0 ? 0 : docLengths[i];
+    }
+
+    @Override
+    public Map<String, Double> docVector(int docId) {
+        ForwardIndex forward = forwardIndex;
+        if (forward == null) {
+            synchronized (this) {
+                if (forwardIndex == null) forwardIndex = ForwardIndex.build(this);
+                forward = forwardIndex;
+            }
+        }
+        return forward.vector(docId);
+    }
+
+    // The copy is compact: its TF-IDF vectors are derived only if something asks for them
+    @Override
+    public SearchIndexData toIndexData() {
+        Map<String, List<Posting>> invertedIndex = new HashMap<>();
+        Map<String, Double> idfScores = new HashMap<>();
+        Map<Integer, Double> norms = new HashMap<>();
+        Map<Integer, Integer> lengths = new HashMap<>();
+
+        for (int termId = 0; termId < postingStore.termCount(); termId++) {
+            String term = dictionary.term(termId);
+            double idf = this.idf[termId];
+            idfScores.put(term, idf);
+
+            List<Posting> postings = new ArrayList<>(postingStore.docFreq(termId));
+            PostingsCursor cursor = postingStore.postings(termId);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                List<Integer> positions = new ArrayList<>(cursor.freq());
+                for (int i = 0; i < cursor.freq(); i++) {
+                    positions.add(cursor.nextPosition());
+                }
+                postings.add(new Posting(cursor.docId(), cursor.freq(), positions));
+            }
+            invertedIndex.put(term, postings);
+        }
+        for (int i = 0; i < docIds.length; i++) {
+            norms.put(docIds[i], docNorms[i]);
+            lengths.put(docIds[i], docLengths[i]);
+        }
+        return new SearchIndexData(invertedIndex, null, idfScores, norms, lengths);
+    }
+
+    // Streams {"docId": {"term": weight, ..}, ..} into {"docId": norm}, summing squares in file order
+    static class VectorNormsReader extends StdDeserializer<Map<Integer, Double>> {
+
+        public VectorNormsReader() {
+            super(Map.class);
+        }
+
+        @Override
+        public Map<Integer, Double> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            Map<Integer, Double> norms = new HashMap<>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                int docId = Integer.parseInt(p.getCurrentName());
+                p.nextToken();
+
+                double norm = 0.0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    p.nextToken();
+                    double score = p.getDoubleValue();
+                    norm += score * score;
+                }
+                norms.put(docId, Math.sqrt(norm));
+            }
+            return norms;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package features.search;
+
+import domain.Book;
+import domain.Posting;
+import utils.TextProcessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join version of IndexBuilder.
+ * Books are split into ranges, every leaf task indexes its range with its own TextProcessor
+ * into a private partial index, and partials are merged left-to-right so each posting list
+ * stays in book order. The result is identical (same maps, same iteration order) to indexing
+ * the books one by one with a single IndexBuilder.
+ */
+public class ParallelIndexBuilder {
+
+    // Below this many books a task stops splitting and indexes directly
+    private static final int LEAF_SIZE = 256;
+
+    private final Set<String> stopWords;
+    private final ForkJoinPool pool;
+    // Postings of every batch added so far, terms in first-seen order
+    private final Map<String, List<Posting>> merged = new LinkedHashMap<>();
+
+    public ParallelIndexBuilder(Set<String> stopWords, ForkJoinPool pool) {
+        this.stopWords = stopWords;
+        this.pool = pool;
+    }
+
+    public Map<String, List<Posting>> build(List<Book> books) {
+        add(books);
+        return finish();
+    }
+
+    /**
+     * Indexes the next batch of books. Batches must arrive in book order; only the current batch
+     * has to be in memory, so a streamed catalog can be indexed a few thousand books at a time.
+     */
+    public void add(List<Book> batch) {
+        if (batch.isEmpty()) return;
+        Map<String, List<Posting>> partial = pool.invoke(new IndexTask(batch, 0, batch.size()));
+        for (Map.Entry<String, List<Posting>> entry : partial.entrySet()) {
+            merged.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+        }
+    }
+
+    // Inverted index of all batches added so far; the builder starts empty again afterwards
+    public Map<String, List<Posting>> finish() {
+        // Re-insert in first-seen order with computeIfAbsent, the same call IndexBuilder uses
+        // (put appends to a bucket, computeIfAbsent prepends), so the HashMap grows and orders
+        // its buckets exactly like a sequential build.
+        Map<String, List<Posting>> invertedIndex = new HashMap<>();
+        for (Map.Entry<String, List<Posting>> entry : merged.entrySet()) {
+            invertedIndex.computeIfAbsent(entry.getKey(), k -> entry.getValue());
+        }
+        merged.clear();
+        return invertedIndex;
+    }
+
+    private class IndexTask extends RecursiveTask<Map<String, List<Posting>>> {
+        private final List<Book> books;
+        private final int from;
+        private final int to;
+
+        IndexTask(List<Book> books, int from, int to) {
+            this.books = books;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, List<Posting>> compute() {
+            if (to - from <= LEAF_SIZE) {
+                IndexBuilder partial = new IndexBuilder(new TextProcessor(stopWords), new LinkedHashMap<>());
+                for (int i = from; i < to; i++) {
+                    partial.indexDocument(books.get(i));
+                }
+                return partial.getInvertedIndex();
+            }
+
+            int mid = (from + to) >>> 1;
+            IndexTask left = new IndexTask(books, from, mid);
+            IndexTask right = new IndexTask(books, mid, to);
+            left.fork();
+            Map<String, List<Posting>> rightIndex = right.compute();
+            Map<String, List<Posting>> leftIndex = left.join();
+
+            // Left partial covers the earlier books, so appending keeps postings in book order
+            for (Map.Entry<String, List<Posting>> entry : rightIndex.entrySet()) {
+                leftIndex.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+            }
+            return leftIndex;
+        }
+    }
+}
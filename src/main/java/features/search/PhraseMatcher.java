@@ -0,0 +1,86 @@
+package features.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positional matching of one multi-term clause against single documents, visited in increasing
+ * docId order. Term i of a phrase is expected at position p + i; a document's slop is how far its
+ * best occurrence is from that (0 = the exact phrase), i.e. the smallest range covering one
+ * (position - i) value of every term.
+ */
+class PhraseMatcher {
+
+    private final PostingsCursor[] cursors; // One per phrase term, in phrase order
+    private final int[][] positions;
+    private final int[] counts;
+    private final int[] next;
+    private int loadedDoc = -1;
+
+    private PhraseMatcher(PostingsCursor[] cursors) {
+        this.cursors = cursors;
+        this.positions = new int[cursors.length][8];
+        this.counts = new int[cursors.length];
+        this.next = new int[cursors.length];
+    }
+
+    // Null when one of the terms is not indexed: the clause cannot match any document
+    static PhraseMatcher of(SearchIndex index, List<String> terms) {
+        PostingsCursor[] cursors = new PostingsCursor[terms.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            int ordinal = index.termOrdinal(terms.get(i));
+            if (ordinal < 0) return null;
+            cursors[i] = index.postings(ordinal);
+        }
+        return new PhraseMatcher(cursors);
+    }
+
+    // Whether the document contains every term, anywhere
+    boolean containsAll(int doc) {
+        for (PostingsCursor cursor : cursors) {
+            if (cursor.advance(doc) != doc) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Smallest slop of the phrase in the document, or -1 when a term is missing.
+     * Stops at the first occurrence within stopAt, so a check against a slop limit (0 for an
+     * exact phrase) returns as soon as one qualifying occurrence is found.
+     */
+    int minSlop(int doc, int stopAt) {
+        if (!containsAll(doc)) return -1;
+        loadPositions(doc);
+
+        // Walk all lists together, always moving the one holding the smallest value
+        Arrays.fill(next, 0);
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, minTerm = 0;
+            for (int i = 0; i < cursors.length; i++) {
+                int value = positions[i][next[i]] - i;
+                if (value < min) {
+                    min = value;
+                    minTerm = i;
+                }
+                max = Math.max(max, value);
+            }
+            best = Math.min(best, max - min);
+            if (best <= stopAt) return best;
+            if (++next[minTerm] == counts[minTerm]) return best;
+        }
+    }
+
+    private void loadPositions(int doc) {
+        if (loadedDoc == doc) return;
+        loadedDoc = doc;
+        for (int i = 0; i < cursors.length; i++) {
+            int freq = cursors[i].freq();
+            if (positions[i].length < freq) positions[i] = Arrays.copyOf(positions[i], Integer.highestOneBit(freq) * 2);
+            for (int j = 0; j < freq; j++) {
+                positions[i][j] = cursors[i].nextPosition();
+            }
+            counts[i] = freq;
+        }
+    }
+}
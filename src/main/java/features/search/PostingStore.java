@@ -0,0 +1,281 @@
+package features.search;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import domain.Posting;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All posting lists of an index packed into a handful of flat int arrays, keyed by the term
+ * ordinals of a TermDictionary. Term t owns postings [termStarts[t], termStarts[t + 1]) of docIds/freqs, and posting p owns
+ * positions [positionStarts[p], positionStarts[p + 1]). Compared to Map<String, List<Posting>>
+ * this replaces millions of small objects (Posting, ArrayList, Integer) with six arrays.
+ *
+ * Jackson reads the "invertedIndex" JSON object straight into it (see JsonReader), without
+ * creating Posting objects on the way.
+ */
+@JsonDeserialize(using = PostingStore.JsonReader.class)
+public class PostingStore {
+
+    @Getter
+    private final TermDictionary dictionary;
+    private final int[] termStarts;
+    private final int[] docIds;
+    private final int[] freqs;
+    private final int[] positionStarts;
+    private final int[] positions;
+
+    private PostingStore(TermDictionary dictionary, int[] termStarts, int[] docIds, int[] freqs,
+                         int[] positionStarts, int[] positions) {
+        this.dictionary = dictionary;
+        this.termStarts = termStarts;
+        this.docIds = docIds;
+        this.freqs = freqs;
+        this.positionStarts = positionStarts;
+        this.positions = positions;
+    }
+
+    public static PostingStore from(Map<String, List<Posting>> invertedIndex) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, List<Posting>> entry : invertedIndex.entrySet()) {
+            builder.startTerm(entry.getKey());
+            for (Posting posting : entry.getValue()) {
+                for (int position : posting.getPositions()) {
+                    builder.addPosition(position);
+                }
+                builder.endPosting(posting.getDocId(), posting.getFreq());
+            }
+        }
+        return builder.build();
+    }
+
+    public int termCount() {
+        return dictionary.size();
+    }
+
+    // -1 when the term is not indexed
+    public int termId(String term) {
+        return dictionary.ordinal(term);
+    }
+
+    public String term(int termId) {
+        return dictionary.term(termId);
+    }
+
+    public int docFreq(int termId) {
+        return termStarts[termId + 1] - termStarts[termId];
+    }
+
+    public PostingsCursor postings(int termId) {
+        return new ArrayCursor(this, termStarts[termId], termStarts[termId + 1]);
+    }
+
+    // Copies the array references into fields so the hot loop does not go through the store
+    private static class ArrayCursor implements PostingsCursor {
+        private final int[] docIds;
+        private final int[] freqs;
+        private final int[] positionStarts;
+        private final int[] positions;
+        private final int start;
+        private final int end;
+        private int index;
+        private int docId = -1;
+        private int positionAt;
+
+        ArrayCursor(PostingStore store, int start, int end) {
+            this.docIds = store.docIds;
+            this.freqs = store.freqs;
+            this.positionStarts = store.positionStarts;
+            this.positions = store.positions;
+            this.start = start;
+            this.end = end;
+            this.index = start - 1;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (++index >= end) {
+                index = end;
+                return docId = NO_MORE_DOCS;
+            }
+            positionAt = positionStarts[index];
+            return docId = docIds[index];
+        }
+
+        // Gallops ahead in doubling steps, then binary-searches the last step
+        @Override
+        public int advance(int target) {
+            if (docId >= target) return docId;
+            int low = index + 1;
+            int step = 1;
+            int high = low;
+            while (high < end && docIds[high] < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, end - 1);
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (docIds[mid] < target) low = mid + 1;
+                else high = mid - 1;
+            }
+            index = low - 1;
+            return nextDoc();
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int freq() {
+            return freqs[index];
+        }
+
+        @Override
+        public int nextPosition() {
+            return positions[positionAt++];
+        }
+
+        @Override
+        public int cost() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Appends terms one at a time, in any term order; postings of a term must be added in docId
+     * order, each posting's positions before the posting itself. build() sorts the terms.
+     */
+    public static class Builder {
+        private String[] terms = new String[64];
+        private int[] termStarts = new int[65];
+        private int termCount;
+        private int[] docIds = new int[256];
+        private int[] freqs = new int[256];
+        private int[] positionStarts = new int[257];
+        private int postingCount;
+        private int[] positions = new int[512];
+        private int positionCount;
+
+        public void startTerm(String term) {
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                termStarts = Arrays.copyOf(termStarts, termCount * 2 + 1);
+            }
+            terms[termCount++] = term;
+            termStarts[termCount] = postingCount;
+        }
+
+        public void addPosition(int position) {
+            if (positionCount == positions.length) {
+                positions = Arrays.copyOf(positions, positionCount * 2);
+            }
+            positions[positionCount++] = position;
+        }
+
+        public void endPosting(int docId, int freq) {
+            if (postingCount == docIds.length) {
+                docIds = Arrays.copyOf(docIds, postingCount * 2);
+                freqs = Arrays.copyOf(freqs, postingCount * 2);
+                positionStarts = Arrays.copyOf(positionStarts, postingCount * 2 + 1);
+            }
+            docIds[postingCount] = docId;
+            freqs[postingCount] = freq;
+            postingCount++;
+            positionStarts[postingCount] = positionCount;
+            termStarts[termCount] = postingCount;
+        }
+
+        public PostingStore build() {
+            Integer[] order = new Integer[termCount];
+            for (int i = 0; i < termCount; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparing(i -> terms[i]));
+
+            // Copy each term's postings and positions into sorted term order
+            String[] sortedTerms = new String[termCount];
+            int[] sortedTermStarts = new int[termCount + 1];
+            int[] sortedDocIds = new int[postingCount];
+            int[] sortedFreqs = new int[postingCount];
+            int[] sortedPositionStarts = new int[postingCount + 1];
+            int[] sortedPositions = new int[positionCount];
+            int postingAt = 0, positionAt = 0;
+            for (int ord = 0; ord < termCount; ord++) {
+                int term = order[ord];
+                sortedTerms[ord] = terms[term];
+                int from = termStarts[term], to = termStarts[term + 1];
+                System.arraycopy(docIds, from, sortedDocIds, postingAt, to - from);
+                System.arraycopy(freqs, from, sortedFreqs, postingAt, to - from);
+                for (int p = from; p < to; p++) {
+                    int length = positionStarts[p + 1] - positionStarts[p];
+                    System.arraycopy(positions, positionStarts[p], sortedPositions, positionAt, length);
+                    positionAt += length;
+                    sortedPositionStarts[++postingAt] = positionAt;
+                }
+                sortedTermStarts[ord + 1] = postingAt;
+            }
+            return new PostingStore(TermDictionary.ofSorted(sortedTerms), sortedTermStarts,
+                    sortedDocIds, sortedFreqs, sortedPositionStarts, sortedPositions);
+        }
+    }
+
+    /**
+     * Streams {"term": [{"docId": .., "freq": .., "positions": [..]}, ..], ..} into a Builder.
+     */
+    public static class JsonReader extends StdDeserializer<PostingStore> {
+
+        public JsonReader() {
+            super(PostingStore.class);
+        }
+
+        @Override
+        public PostingStore deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            Builder builder = new Builder();
+            expect(p, p.currentToken(), JsonToken.START_OBJECT, ctxt);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                builder.startTerm(p.getCurrentName());
+                expect(p, p.nextToken(), JsonToken.START_ARRAY, ctxt);
+
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    int docId = 0, freq = 0;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = p.getCurrentName();
+                        JsonToken value = p.nextToken();
+                        switch (field) {
+                            case "docId": docId = p.getIntValue(); break;
+                            case "freq": freq = p.getIntValue(); break;
+                            case "positions":
+                                expect(p, value, JsonToken.START_ARRAY, ctxt);
+                                while (p.nextToken() != JsonToken.END_ARRAY) {
+                                    builder.addPosition(p.getIntValue());
+                                }
+                                break;
+                            default: p.skipChildren();
+                        }
+                    }
+                    builder.endPosting(docId, freq);
+                }
+            }
+            return builder.build();
+        }
+
+        private static void expect(JsonParser p, JsonToken actual, JsonToken expected,
+                                   DeserializationContext ctxt) throws IOException {
+            if (actual != expected) {
+                ctxt.reportWrongTokenException(PostingStore.class, expected, "Malformed invertedIndex");
+            }
+        }
+    }
+}
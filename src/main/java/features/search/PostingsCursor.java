@@ -0,0 +1,38 @@
+package features.search;
+
+/**
+ * Forward-only walk over one term's posting list, in increasing docId order.
+ * Implementations read straight from their backing store (heap lists, a memory-mapped file ...)
+ * so scoring never has to materialize Posting objects.
+ */
+public interface PostingsCursor {
+
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // Moves to the next posting and returns its docId, or NO_MORE_DOCS at the end
+    int nextDoc();
+
+    int docId();
+
+    // Term frequency in the current document
+    int freq();
+
+    // Returns the next position of the term in the current document; call at most freq() times
+    int nextPosition();
+
+    // Number of documents in the list (the term's document frequency)
+    int cost();
+
+    /**
+     * Moves to the first posting whose docId is >= target and returns its docId, or NO_MORE_DOCS.
+     * Never moves backwards: a cursor already at or past target stays where it is.
+     * Implementations override this to skip without visiting every posting in between.
+     */
+    default int advance(int target) {
+        int doc = docId();
+        while (doc < target) {
+            doc = nextDoc();
+        }
+        return doc;
+    }
+}
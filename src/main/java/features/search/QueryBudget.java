@@ -0,0 +1,75 @@
+package features.search;
+
+import java.time.Duration;
+
+/**
+ * How much work one query may do: a deadline, a number of postings visited, or both.
+ * Scorers report their progress through visit() and stop when it returns false; the results
+ * found so far are then returned and isTruncated() tells the caller they may be incomplete.
+ *
+ * A budget belongs to a single query (it counts), so make a new one per request. The clock is
+ * only read every CLOCK_INTERVAL postings, which keeps the check cheap in the scoring loops.
+ */
+public class QueryBudget {
+
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long deadlineNanos;
+    private final long maxPostings;
+    private long visited;
+    private long nextClockCheck = CLOCK_INTERVAL;
+    private boolean truncated;
+
+    private QueryBudget(long deadlineNanos, long maxPostings) {
+        this.deadlineNanos = deadlineNanos;
+        this.maxPostings = maxPostings;
+    }
+
+    public static QueryBudget unlimited() {
+        return new QueryBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    // Either bound may be null / <= 0 for none
+    public static QueryBudget of(Duration timeout, long maxPostings) {
+        long deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+        return new QueryBudget(deadline, maxPostings > 0 ? maxPostings : Long.MAX_VALUE);
+    }
+
+    public static QueryBudget deadline(Duration timeout) {
+        return of(timeout, 0);
+    }
+
+    public static QueryBudget postings(long maxPostings) {
+        return of(null, maxPostings);
+    }
+
+    // Counts postings just visited; false once the budget is spent (and from then on)
+    public boolean visit(int postings) {
+        if (truncated) return false;
+        visited += postings;
+        if (visited > maxPostings) {
+            truncated = true;
+        } else if (visited >= nextClockCheck) {
+            nextClockCheck = visited + CLOCK_INTERVAL;
+            truncated = deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0;
+        }
+        return !truncated;
+    }
+
+    // Checks the clock now, for loops that do more per step than read a posting
+    public boolean exhausted() {
+        if (!truncated && deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0) {
+            truncated = true;
+        }
+        return truncated;
+    }
+
+    // Whether some work was skipped, i.e. the results may be incomplete
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long postingsVisited() {
+        return visited;
+    }
+}
@@ -0,0 +1,177 @@
+package features.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded segmented LRU cache for search results.
+ *
+ * New entries go to a probation segment; a hit there promotes them to a protected segment
+ * (80% of the weight budget) whose least recently used entries are demoted back to probation.
+ * Evictions come from the least recently used end of probation, so a burst of one-off queries cannot flush the
+ * queries users keep repeating. The cache is bounded both by entry count and by total weight
+ * (e.g. number of results held).
+ *
+ * Every access first compares the version source with the version the entries were computed
+ * for; when it moved (index or popularity reloaded), the whole cache is dropped.
+ */
+public class QueryCache<K, V> {
+
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long maxProtectedWeight;
+    private final ToIntFunction<V> weigher;
+    private final LongSupplier versionSource;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private static class Entry<V> {
+        final V value;
+        final int weight;
+
+        Entry(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    public QueryCache(int maxEntries, long maxWeight, ToIntFunction<V> weigher, LongSupplier versionSource) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive: " + maxEntries + " entries, " + maxWeight + " weight");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = (long) (maxWeight * PROTECTED_SHARE);
+        this.weigher = weigher;
+        this.versionSource = versionSource;
+        this.version = versionSource.getAsLong();
+    }
+
+    // Cached value, or null on a miss
+    public synchronized V get(K key) {
+        checkVersion();
+        Entry<V> entry = protectedSegment.get(key);
+        if (entry == null) {
+            entry = probation.remove(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            // Hit on probation: promote
+            probationWeight -= entry.weight;
+            protectedSegment.put(key, entry);
+            protectedWeight += entry.weight;
+            demoteOverflow();
+        }
+        hits++;
+        return entry.value;
+    }
+
+    // Version to pass to put() for a value about to be computed
+    public long currentVersion() {
+        return versionSource.getAsLong();
+    }
+
+    // Stores a value computed at the given version; dropped if a reload happened meanwhile
+    public synchronized void put(K key, V value, long computedAt) {
+        checkVersion();
+        if (computedAt != version) return;
+        Entry<V> entry = new Entry<>(value, Math.max(1, weigher.applyAsInt(value)));
+        if (entry.weight > maxWeight) return; // Would evict everything else and still not fit
+
+        Entry<V> old = protectedSegment.get(key);
+        if (old != null) {
+            // Replacing a protected entry keeps it protected
+            protectedSegment.put(key, entry);
+            protectedWeight += entry.weight - old.weight;
+            demoteOverflow();
+        } else {
+            old = probation.put(key, entry);
+            probationWeight += entry.weight - (old != null ? old.weight : 0);
+        }
+        evictOverflow();
+    }
+
+    public synchronized void invalidateAll() {
+        if (!probation.isEmpty() || !protectedSegment.isEmpty()) invalidations++;
+        probation.clear();
+        protectedSegment.clear();
+        probationWeight = 0;
+        protectedWeight = 0;
+    }
+
+    public synchronized int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    public synchronized long weight() {
+        return probationWeight + protectedWeight;
+    }
+
+    public synchronized long hitCount() { return hits; }
+
+    public synchronized long missCount() { return misses; }
+
+    public synchronized long evictionCount() { return evictions; }
+
+    public synchronized long invalidationCount() { return invalidations; }
+
+    public synchronized double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, weight %d, %d hits / %d misses (%.1f%%), %d evicted, %d invalidations",
+                size(), weight(), hits, misses, 100 * hitRate(), evictions, invalidations);
+    }
+
+    private void checkVersion() {
+        long current = versionSource.getAsLong();
+        if (current != version) {
+            version = current;
+            invalidateAll();
+        }
+    }
+
+    // Protected LRU entries over budget go back to probation, as its most recently used
+    private void demoteOverflow() {
+        Iterator<Map.Entry<K, Entry<V>>> lru = protectedSegment.entrySet().iterator();
+        while (protectedWeight > maxProtectedWeight && lru.hasNext()) {
+            Map.Entry<K, Entry<V>> demoted = lru.next();
+            lru.remove();
+            protectedWeight -= demoted.getValue().weight;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationWeight += demoted.getValue().weight;
+        }
+    }
+
+    // Probation LRU entries go first; protected ones only once probation is empty
+    private void evictOverflow() {
+        while (size() > maxEntries || weight() > maxWeight) {
+            LinkedHashMap<K, Entry<V>> segment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Map.Entry<K, Entry<V>>> lru = segment.entrySet().iterator();
+            Entry<V> evicted = lru.next().getValue();
+            lru.remove();
+            if (segment == probation) probationWeight -= evicted.weight;
+            else protectedWeight -= evicted.weight;
+            evictions++;
+        }
+    }
+}
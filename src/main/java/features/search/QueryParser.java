@@ -0,0 +1,175 @@
+package features.search;
+
+import features.search.BooleanQuery.Clause;
+import features.search.BooleanQuery.Occur;
+import utils.TextProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Small query language for the search box:
+ *   +word       the document must contain it
+ *   -word       the document must not contain it
+ *   "a phrase"  the words as a phrase (may be prefixed with + or - too)
+ *   "a b"~N     the words within N moves of an exact phrase (proximity)
+ *   word        optional, only adds to the score
+ *   java* ja?a  wildcard word: * is any run of characters, ? one character; needs a literal
+ *               prefix, and a ? at the very end is read as punctuation ("what is java?")
+ * Every clause goes through the same TextProcessor as indexing; clauses left with no terms
+ * (stop words, a lone "+") are dropped. An unterminated quote runs to the end of the input.
+ */
+public class QueryParser {
+
+    private final TextProcessor textProcessor;
+
+    public QueryParser(TextProcessor textProcessor) {
+        this.textProcessor = textProcessor;
+    }
+
+    public BooleanQuery parse(String rawQuery) {
+        List<Clause> clauses = new ArrayList<>();
+        for (Segment segment : segments(rawQuery)) {
+            if (!segment.phrase) {
+                String pattern = pattern(segment.text);
+                if (pattern != null) {
+                    clauses.add(new Clause(segment.occur, List.of(pattern), false));
+                    continue;
+                }
+            }
+
+            List<String> terms = textProcessor.process(segment.text);
+            if (!terms.isEmpty()) {
+                clauses.add(new Clause(segment.occur, terms, segment.phrase, segment.slop));
+            }
+        }
+        return new BooleanQuery(clauses);
+    }
+
+    /**
+     * The words of a query as typed, without its syntax: the text of the required and optional
+     * clauses, space separated, with quotes, + and - prefixes, ~N and prohibited clauses dropped,
+     * and a wildcard word cut to its literal prefix: +"clean code" -java pyth* gives
+     * clean code pyth. For matching the query against titles (ReRanker), which compares words,
+     * not operators.
+     */
+    public static String plainText(String rawQuery) {
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : segments(rawQuery)) {
+            if (segment.occur == Occur.PROHIBITED) continue;
+            String words = segment.text.trim().replaceAll("\\s+", " ");
+            if (!segment.phrase) {
+                String wildcard = wildcard(words);
+                if (wildcard != null) words = wildcard.substring(0, literalPrefix(wildcard));
+            }
+            if (words.isEmpty()) continue;
+            if (text.length() > 0) text.append(' ');
+            text.append(words);
+        }
+        return text.toString();
+    }
+
+    // One clause of the input as typed, before its words are processed
+    private static final class Segment {
+        final Occur occur;
+        final String text;
+        final boolean phrase;
+        final int slop;
+
+        Segment(Occur occur, String text, boolean phrase, int slop) {
+            this.occur = occur;
+            this.text = text;
+            this.phrase = phrase;
+            this.slop = slop;
+        }
+    }
+
+    // Splits the input into its operators, quoted phrases and words
+    private static List<Segment> segments(String rawQuery) {
+        List<Segment> segments = new ArrayList<>();
+        if (rawQuery == null) return segments;
+
+        int at = 0;
+        int length = rawQuery.length();
+        while (at < length) {
+            char c = rawQuery.charAt(at);
+            if (Character.isWhitespace(c)) {
+                at++;
+                continue;
+            }
+
+            // An operator only counts when it is glued to what follows it
+            Occur occur = Occur.OPTIONAL;
+            if ((c == '+' || c == '-') && at + 1 < length && !Character.isWhitespace(rawQuery.charAt(at + 1))) {
+                occur = c == '+' ? Occur.REQUIRED : Occur.PROHIBITED;
+                c = rawQuery.charAt(++at);
+            }
+
+            if (c == '"') {
+                int close = rawQuery.indexOf('"', at + 1);
+                int end = close < 0 ? length : close;
+                String text = rawQuery.substring(at + 1, end);
+                at = end + 1;
+
+                int slop = 0;
+                int digits = at + 1;
+                while (digits < length && digits - at <= 4 && Character.isDigit(rawQuery.charAt(digits))) digits++;
+                if (at < length && rawQuery.charAt(at) == '~' && digits > at + 1) {
+                    slop = Integer.parseInt(rawQuery.substring(at + 1, digits));
+                    at = digits;
+                }
+                segments.add(new Segment(occur, text, true, slop));
+            } else {
+                int end = at;
+                while (end < length && !Character.isWhitespace(rawQuery.charAt(end))) end++;
+                segments.add(new Segment(occur, rawQuery.substring(at, end), false, 0));
+                at = end;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Lowercased wildcard pattern of a word, or null when it is not one. Index terms are stems,
+     * so for a plain prefix (learning*) the literal is cut back to what it shares with its own
+     * stem (learn*), which keeps the documents the word itself would have matched.
+     */
+    private String pattern(String word) {
+        String pattern = wildcard(word);
+        if (pattern == null) return null;
+
+        int literal = literalPrefix(pattern);
+        if (literal == pattern.length() - 1 && pattern.charAt(literal) == '*') {
+            String prefix = pattern.substring(0, literal);
+            List<String> stems = textProcessor.process(prefix);
+            if (stems.size() == 1) {
+                String stem = stems.get(0);
+                int common = 0;
+                while (common < Math.min(prefix.length(), stem.length()) && prefix.charAt(common) == stem.charAt(common)) common++;
+                if (common > 0) return prefix.substring(0, common) + "*";
+            }
+        }
+        return pattern;
+    }
+
+    // The word lowercased, with only letters, digits, ' and the wildcards kept, when it has a
+    // literal prefix and a wildcard after it; null otherwise
+    private static String wildcard(String word) {
+        StringBuilder kept = new StringBuilder();
+        for (char c : word.toLowerCase().toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '\'' || c == '*' || c == '?') kept.append(c);
+        }
+        while (kept.length() > 0 && kept.charAt(kept.length() - 1) == '?') kept.setLength(kept.length() - 1);
+
+        String pattern = kept.toString();
+        int literal = literalPrefix(pattern);
+        return literal == 0 || literal == pattern.length() ? null : pattern; // No prefix, or no wildcard left
+    }
+
+    // Length of the pattern before its first wildcard
+    private static int literalPrefix(String pattern) {
+        int literal = 0;
+        while (literal < pattern.length() && pattern.charAt(literal) != '*' && pattern.charAt(literal) != '?') literal++;
+        return literal;
+    }
+}
@@ -1,49 +1,132 @@
 package features.search;
 
 import domain.Posting;
+import domain.SearchIndexData;
 import domain.SearchResult;
+import lombok.Getter;
+import lombok.Setter;
 import utils.TextProcessor;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Safe for concurrent searches: the parser and TextProcessor are stateless, each search reads
+ * the index once into a local snapshot and scores into accumulators no other search holds.
+ * Wildcard words and (with fuzzy on) unknown words are expanded per search, on that snapshot
+ * (see ExpandedTermIndex). Scores come from the Similarity in use, cosine unless set otherwise.
+ */
 public class QueryProcessor {
     private final TextProcessor textProcessor;
-    private final Map<String, List<Posting>> invertedIndex;
-    private final Map<Integer, Map<String, Double>> tfIdfVectors;
-    private final Map<String, Double> idfScores;
+    // Swapped whole by setIndex(); each search reads it once and keeps using that snapshot
+    private volatile SearchIndex index;
+    private final QueryParser queryParser;
+    // Bumped by every setIndex(), setSimilarity() and setFuzzy(), so caches of results can tell they are stale
+    @Getter
+    private volatile long indexVersion;
+    // Top-k searches skip documents that cannot make the top-k (MaxScoreEvaluator); off = score every match
+    @Getter @Setter
+    private volatile boolean pruning = true;
+    // Words the index does not have are matched to the index terms within 1-2 edits (LevenshteinAutomaton)
+    @Getter
+    private volatile boolean fuzzy = true;
+    // searchBatch adds postings through the Vector API kernel when this JVM has it (see ScoringKernel);
+    // on by default with -Ddevshelf.simd=true, scalar whenever the module is missing
+    @Getter @Setter
+    private volatile boolean vectorScoring = Boolean.getBoolean(ScoringKernel.SIMD_PROPERTY);
+    // How matches are scored (cosine or BM25); each search reads it once. Cosine unless
+    // -Ddevshelf.similarity=bm25
+    @Getter
+    private volatile Similarity similarity = Similarity.named(System.getProperty(Similarity.SIMILARITY_PROPERTY));
+
+    // Dense per-document accumulators, reset at the start of every search. Pooled rather than
+    // per thread: a virtual thread lives for one request, so a thread-local set would be rebuilt
+    // every time. The pool holds at most one set per search that ever ran at the same time.
+    private static final ConcurrentLinkedQueue<ScoreAccumulator> ACCUMULATORS = new ConcurrentLinkedQueue<>();
 
     public QueryProcessor(TextProcessor textProcessor,
                           Map<String, List<Posting>> invertedIndex,
                           Map<Integer, Map<String, Double>> tfIdfVectors,
                           Map<String, Double> idfScores) {
+        this(textProcessor, new HeapSearchIndex(new SearchIndexData(invertedIndex, tfIdfVectors, idfScores)));
+    }
+
+    public QueryProcessor(TextProcessor textProcessor, SearchIndex index) {
         this.textProcessor = textProcessor;
-        this.invertedIndex = invertedIndex;
-        this.tfIdfVectors = tfIdfVectors;
-        this.idfScores = idfScores;
+        this.index = index;
+        this.queryParser = new QueryParser(textProcessor);
+    }
+
+    public synchronized void setIndex(SearchIndex index) {
+        this.index = index;
+        indexVersion++;
+    }
+
+    // Changes every score, so it also bumps indexVersion
+    public synchronized void setSimilarity(Similarity similarity) {
+        this.similarity = similarity;
+        indexVersion++;
+    }
+
+    // Changes which documents match at all, so it also bumps indexVersion
+    public synchronized void setFuzzy(boolean fuzzy) {
+        this.fuzzy = fuzzy;
+        indexVersion++;
+    }
+
+    // Canonical form of a query (see BooleanQuery.key()): equal keys always give equal results
+    public String key(String rawQuery) {
+        return queryParser.parse(rawQuery).key();
     }
 
     public List<SearchResult> search(String rawQuery) {
-        // 1. Process the query (same as indexing)
-        List<String> queryTerms = textProcessor.process(rawQuery);
+        return search(rawQuery, QueryBudget.unlimited());
+    }
+
+    /**
+     * search(rawQuery) within a budget. Scoring stops once it is spent and the matches scored so
+     * far are returned, ranked; budget.isTruncated() then tells that some were skipped or only
+     * partly scored.
+     */
+    public List<SearchResult> search(String rawQuery, QueryBudget budget) {
+        return search(rawQuery, budget, ScoreBlend.RELEVANCE);
+    }
+
+    /**
+     * search(rawQuery, budget) ranked by blend instead of relevance alone (e.g. a
+     * ReRanker.blend()): every match is blended as it is scored and the list is sorted once.
+     */
+    public List<SearchResult> search(String rawQuery, QueryBudget budget, ScoreBlend blend) {
+        BooleanQuery query = queryParser.parse(rawQuery);
+        SearchIndex index = ExpandedTermIndex.of(this.index, query.terms(), fuzzy);
+        ScoreAccumulator dotProducts = acquireAccumulator();
+        try {
+            return scoreAll(index, similarity, query, dotProducts, budget, blend);
+        } finally {
+            releaseAccumulator(dotProducts);
+        }
+    }
 
-        // 2. Calculate the query's own TF-IDF vector
-        Map<String, Double> queryVector = calculateQueryVector(queryTerms);
-        if (queryVector.isEmpty()) {
-            return Collections.emptyList(); // No valid terms
+    private static List<SearchResult> scoreAll(SearchIndex index, Similarity similarity, BooleanQuery query,
+                                               ScoreAccumulator dotProducts, QueryBudget budget, ScoreBlend blend) {
+        if (!query.isPlain()) {
+            List<SearchResult> results = blend(new BooleanEvaluator(index, similarity).evaluate(query, dotProducts, budget), blend);
+            Collections.sort(results);
+            return results;
         }
 
-        // 3. Find all documents that match *any* query term
-        Set<Integer> matchingDocIds = findMatchingDocuments(queryTerms);
+        double queryNorm = accumulate(index, similarity, query.scoringTerms(), dotProducts, budget);
 
         // 4. Score each matching document
-        List<SearchResult> results = new ArrayList<>();
-        for (int docId : matchingDocIds) {
-            Map<String, Double> docVector = tfIdfVectors.get(docId);
-
-            // This is the core ranking logic!
-            double score = cosineSimilarity(queryVector, docVector);
+        List<SearchResult> results = new ArrayList<>(dotProducts.size());
+        for (int i = 0; i < dotProducts.size(); i++) {
+            int docOrdinal = dotProducts.ordinal(i);
+            int docId = index.docId(docOrdinal);
+            double score = similarity.score(index, docId, dotProducts.score(docOrdinal), queryNorm);
 
             if (score > 0) {
-                results.add(new SearchResult(docId, score));
+                double ranking = blend.score(docId, score);
+                if (!Double.isNaN(ranking)) results.add(new SearchResult(docId, ranking));
             }
         }
 
@@ -53,65 +136,151 @@ public class QueryProcessor {
         return results;
     }
 
-    private Set<Integer> findMatchingDocuments(List<String> queryTerms) {
-        Set<Integer> docIds = new HashSet<>();
-        for(String term : queryTerms) {
-            List<Posting> postings = invertedIndex.get(term);
-            if(postings != null){
-                for(Posting p : postings) {
-                    docIds.add(p.getDocId());
-                }
-            }
+    /**
+     * The k best results of search(rawQuery), in the same order.
+     * Matches are scored into a bounded heap, so only k of them are ever kept and sorted;
+     * with pruning on, documents that cannot beat the current k-th score are not scored at all.
+     */
+    public List<SearchResult> search(String rawQuery, int k) {
+        return search(rawQuery, k, QueryBudget.unlimited());
+    }
+
+    // search(rawQuery, k) within a budget: the best k of what was scored before it ran out
+    public List<SearchResult> search(String rawQuery, int k, QueryBudget budget) {
+        return search(rawQuery, k, budget, ScoreBlend.RELEVANCE);
+    }
+
+    /**
+     * The k best of search(rawQuery, budget, blend), in the same order: matches are blended
+     * inside the bounded heap, so retrieval and re-ranking are one pass and only k results are
+     * ever sorted. A blend can lift any match (title boosts do), so no match is pruned.
+     */
+    public List<SearchResult> search(String rawQuery, int k, QueryBudget budget, ScoreBlend blend) {
+        BooleanQuery query = queryParser.parse(rawQuery);
+        SearchIndex index = ExpandedTermIndex.of(this.index, query.terms(), fuzzy);
+        Similarity similarity = this.similarity;
+        if (query.isPlain() && pruning && blend == ScoreBlend.RELEVANCE) {
+            QueryVector queryVector = QueryVector.of(index, query.scoringTerms(), similarity);
+            return MaxScoreEvaluator.topK(index, similarity, queryVector, k, budget);
+        }
+
+        ScoreAccumulator dotProducts = acquireAccumulator();
+        try {
+            return scoreTopK(index, similarity, query, k, dotProducts, budget, blend);
+        } finally {
+            releaseAccumulator(dotProducts);
         }
-        return docIds;
     }
 
-    private Map<String, Double> calculateQueryVector(List<String> queryTerms) {
-        Map<String, Double> queryVector = new HashMap<>();
+    /**
+     * search(rawQuery, k) for each of many queries, e.g. a replay of logged searches:
+     * results.get(i) is exactly search(rawQueries.get(i), k). Each distinct query is parsed and
+     * scored once, every posting list once per batch, and the scoring runs on the pool
+     * (see BatchSearcher). Identical queries get equal, separate lists.
+     */
+    public List<List<SearchResult>> searchBatch(List<String> rawQueries, int k, ForkJoinPool pool) {
+        SearchIndex index = this.index;
+        Similarity similarity = this.similarity;
 
-        Map<String, Integer> termCounts = new HashMap<>();
-        for(String term : queryTerms) {
-            termCounts.put(term, termCounts.getOrDefault(term, 0) + 1);
+        // Distinct queries by canonical key, so "Java  Books" and "java books" are scored once
+        Map<String, BooleanQuery> parsed = new HashMap<>();
+        Map<String, Integer> slots = new HashMap<>();
+        List<BooleanQuery> distinct = new ArrayList<>();
+        int[] slotOf = new int[rawQueries.size()];
+        Set<String> terms = new LinkedHashSet<>();
+        for (int i = 0; i < slotOf.length; i++) {
+            BooleanQuery query = parsed.computeIfAbsent(rawQueries.get(i), queryParser::parse);
+            Integer slot = slots.get(query.key());
+            if (slot == null) {
+                slot = distinct.size();
+                slots.put(query.key(), slot);
+                distinct.add(query);
+                terms.addAll(query.terms());
+            }
+            slotOf[i] = slot;
         }
 
-        for(String term : termCounts.keySet()) {
-            double tf = 1 + Math.log10(termCounts.get(term));
-            double idf = idfScores.getOrDefault(term, 0.0);
+        // One expansion of the wildcard and unknown words of the whole batch
+        SearchIndex expanded = ExpandedTermIndex.of(index, terms, fuzzy);
+        ScoringKernel kernel = ScoringKernel.of(vectorScoring);
+        List<List<SearchResult>> scored = new BatchSearcher(expanded, similarity, kernel).topK(distinct, k, pool);
 
-            queryVector.put(term, tf * idf);
+        List<List<SearchResult>> results = new ArrayList<>(slotOf.length);
+        boolean[] handedOut = new boolean[distinct.size()];
+        for (int slot : slotOf) {
+            results.add(handedOut[slot] ? new ArrayList<>(scored.get(slot)) : scored.get(slot));
+            handedOut[slot] = true;
         }
-        return queryVector;
+        return results;
+    }
+
+    // Whether setVectorScoring(true) gets the SIMD kernel: a -Psimd build run with --add-modules jdk.incubator.vector
+    public static boolean isVectorScoringAvailable() {
+        return ScoringKernel.vector() != null;
+    }
+
+    // searchBatch on the common pool
+    public List<List<SearchResult>> searchBatch(List<String> rawQueries, int k) {
+        return searchBatch(rawQueries, k, ForkJoinPool.commonPool());
     }
 
-    private double cosineSimilarity(Map<String, Double> vec1, Map<String, Double> vec2) {
-        if (vec2 == null) {
-            return 0.0; // Document has no vector?
+    static List<SearchResult> scoreTopK(SearchIndex index, Similarity similarity, BooleanQuery query, int k,
+                                        ScoreAccumulator dotProducts, QueryBudget budget, ScoreBlend blend) {
+        TopKCollector topK = new TopKCollector(k, Comparator.naturalOrder());
+        if (!query.isPlain()) {
+            for (SearchResult result : blend(new BooleanEvaluator(index, similarity).evaluate(query, dotProducts, budget), blend)) {
+                topK.offer(result);
+            }
+            return topK.results();
         }
 
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
+        double queryNorm = accumulate(index, similarity, query.scoringTerms(), dotProducts, budget);
 
-        // Calculate Dot Product and Norm1 (Query)
-        for (String term : vec1.keySet()) {
-            double vec1Score = vec1.get(term);
-            double vec2Score = vec2.getOrDefault(term, 0.0);
+        for (int i = 0; i < dotProducts.size(); i++) {
+            int docOrdinal = dotProducts.ordinal(i);
+            int docId = index.docId(docOrdinal);
+            double score = similarity.score(index, docId, dotProducts.score(docOrdinal), queryNorm);
+            if (score <= 0) continue;
 
-            dotProduct += vec1Score * vec2Score;
-            norm1 += vec1Score * vec1Score; // norm1 += Math.pow(vec1Score, 2)
+            double ranking = blend.score(docId, score);
+            if (!Double.isNaN(ranking) && topK.competes(ranking)) {
+                topK.offer(new SearchResult(docId, ranking));
+            }
         }
+        return topK.results();
+    }
 
-        // Calculate Norm2 (Document)
-        for (double score : vec2.values()) {
-            norm2 += score * score; // norm2 += Math.pow(score, 2)
+    // Boolean query results rescored by blend, in place of relevance; unranked, like the input
+    private static List<SearchResult> blend(List<SearchResult> results, ScoreBlend blend) {
+        if (blend == ScoreBlend.RELEVANCE) return results;
+        List<SearchResult> blended = new ArrayList<>(results.size());
+        for (SearchResult result : results) {
+            double ranking = blend.score(result.getDocId(), result.getScore());
+            if (!Double.isNaN(ranking)) blended.add(new SearchResult(result.getDocId(), ranking));
         }
+        return blended;
+    }
 
-        // Prevent division by zero
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
-        }
+    static ScoreAccumulator acquireAccumulator() {
+        ScoreAccumulator accumulator = ACCUMULATORS.poll();
+        return accumulator != null ? accumulator : new ScoreAccumulator();
+    }
+
+    static void releaseAccumulator(ScoreAccumulator accumulator) {
+        ACCUMULATORS.offer(accumulator);
+    }
+
+    // Resets dotProducts and fills it with every matching document's dot product with the query
+    // (term at a time, by document ordinal), as far as the budget goes. Returns the query norm
+    // of the similarity, 0 when no term is indexed.
+    private static double accumulate(SearchIndex index, Similarity similarity, List<String> queryTerms,
+                                     ScoreAccumulator dotProducts, QueryBudget budget) {
+        dotProducts.reset(index.docCount());
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        // Calculate the query's own vector, resolving each term to its ordinal once
+        QueryVector queryVector = QueryVector.of(index, queryTerms, similarity);
+        dotProducts.addAll(index, similarity, queryVector, budget);
+        return similarity.queryNorm(index, queryVector);
     }
 
 }
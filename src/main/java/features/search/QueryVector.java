@@ -0,0 +1,60 @@
+package features.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A query's own vector: its distinct indexed terms as ordinals (ascending) and their weights
+ * under a Similarity (TF-IDF weights for cosine). Scorers sum per-term contributions in this
+ * order, which keeps their scores bit-identical.
+ */
+class QueryVector {
+    final int[] ordinals;
+    final double[] weights;
+    int size;
+
+    private QueryVector(int capacity) {
+        this.ordinals = new int[capacity];
+        this.weights = new double[capacity];
+    }
+
+    static QueryVector of(SearchIndex index, List<String> queryTerms) {
+        return of(index, queryTerms, Similarity.cosine());
+    }
+
+    // Terms that are not indexed are dropped here: no document has them, so they add nothing to
+    // any score (and with cosine their idf is 0, so nothing to the query norm either).
+    static QueryVector of(SearchIndex index, List<String> queryTerms, Similarity similarity) {
+        int[] ordinals = new int[queryTerms.size()];
+        int count = 0;
+        for (String term : queryTerms) {
+            int ordinal = index.termOrdinal(term);
+            if (ordinal >= 0) ordinals[count++] = ordinal;
+        }
+        Arrays.sort(ordinals, 0, count);
+
+        // Runs of equal ordinals are repeated terms
+        QueryVector queryVector = new QueryVector(count);
+        for (int start = 0, end; start < count; start = end) {
+            end = start + 1;
+            while (end < count && ordinals[end] == ordinals[start]) end++;
+
+            queryVector.add(ordinals[start], similarity.queryWeight(index, ordinals[start], end - start));
+        }
+        return queryVector;
+    }
+
+    private void add(int ordinal, double weight) {
+        ordinals[size] = ordinal;
+        weights[size++] = weight;
+    }
+
+    // Sum of the squared weights (the squared query norm), 0 when no term is indexed
+    double squaredNorm() {
+        double norm = 0.0;
+        for (int i = 0; i < size; i++) {
+            norm += weights[i] * weights[i];
+        }
+        return norm;
+    }
+}
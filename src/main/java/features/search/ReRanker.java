@@ -10,16 +10,38 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * Final ranking: the Master Formula (tf-idf, rating, popularity) plus tiered title boosts.
+ * The rating and popularity part is the same for every query, so it is computed once per
+ * popularity load into an array by book ordinal (StaticScores) and only looked up per result.
+ * Title boosts are looked up the same way, in a TitleIndex built once over the same
+ * CatalogSnapshot.
+ *
+ * Safe for concurrent use: reloads swap the popularity map and its static scores whole, and
+ * every ranking reads them once, so it never mixes popularity from before and after a reload.
+ */
 public class ReRanker {
 
     private final Map<Integer, Book> bookMap;
+    // Book ordinals of the title index and of every StaticScores, taken once
+    private final CatalogSnapshot catalog;
+    private final TitleIndex titleIndex;
+    private final String popularityFilePath;
+    // Replaced whole on reload, never modified in place
     @Getter
-    private final Map<Integer, Double> popularityMap;
+    private volatile Map<Integer, Double> popularityMap;
+    // Bumped by every reload, so caches of ranked results can tell they are stale
+    @Getter
+    private volatile long popularityVersion;
+    private long popularityStamp; // lastModified of the file that was loaded, 0 if none
+    // Built from popularityMap and swapped with it; what every ranking reads
+    private volatile StaticScores staticScores;
 
     // --- Weights ---
     private static final double W_TFIDF = 0.7;      // 70%
@@ -27,14 +49,37 @@ public class ReRanker {
     private static final double W_RATING = 0.10;     // 10%
 
     // --- NEW: Tiered Title Boosting ---
-    // These are applied *on top* of the final score.
+    // These are applied *on top* of the final score. Exact and starts-with compare the whole
+    // lowercased title with the query; contains means the query's words appear in the title as a phrase.
     private static final double EXACT_TITLE_BOOST = 10.0; // For "python" matching "Python"
     private static final double STARTS_WITH_BOOST = 5.0;  // For "hands-on" matching "Hands-On Machine Learning..."
     private static final double CONTAINS_BOOST = 2.0;     // For "c++" matching "Effective C++"
 
     public ReRanker(Map<Integer, Book> bookMap, String popularityFilePath) {
         this.bookMap = bookMap;
+        this.catalog = new CatalogSnapshot(bookMap);
+        this.titleIndex = new TitleIndex(catalog);
+        this.popularityFilePath = popularityFilePath;
+        this.popularityStamp = new File(popularityFilePath).lastModified();
         this.popularityMap = loadPopularity(popularityFilePath);
+        this.staticScores = new StaticScores(catalog, popularityMap);
+    }
+
+    // Re-reads popularity.json (e.g. after LogAnalyzerMain rewrote it)
+    public synchronized void reloadPopularity() {
+        popularityStamp = new File(popularityFilePath).lastModified();
+        Map<Integer, Double> popularity = loadPopularity(popularityFilePath);
+        StaticScores scores = new StaticScores(catalog, popularity);
+        popularityMap = popularity;
+        staticScores = scores;
+        popularityVersion++;
+    }
+
+    // Reloads only when the file was written, created or deleted since it was last read; cheap enough to call per query
+    public synchronized boolean reloadPopularityIfChanged() {
+        if (new File(popularityFilePath).lastModified() == popularityStamp) return false;
+        reloadPopularity();
+        return true;
     }
 
     private Map<Integer, Double> loadPopularity(String path) {
@@ -73,52 +118,106 @@ public class ReRanker {
      * @param query The original user search query.
      */
     public List<SearchResult> reRank(List<SearchResult> tfIdfResults, String query) {
-        List<SearchResult> reRankedResults = new ArrayList<>();
-        String cleanQuery = query.trim().toLowerCase();
+        ScoreBlend blend = blend(query);
+        List<SearchResult> reRankedResults = new ArrayList<>(tfIdfResults.size());
 
         for (SearchResult oldResult : tfIdfResults) {
-            int docId = oldResult.getDocId();
-            Book book = bookMap.get(docId);
-            if (book == null) continue;
+            double finalScore = blend.score(oldResult.getDocId(), oldResult.getScore());
+            if (!Double.isNaN(finalScore)) reRankedResults.add(new SearchResult(oldResult.getDocId(), finalScore));
+        }
+
+        // --- 3. SORT BY FINAL SCORE & TIE-BREAK ---
+        // SearchResult's order: higher score first, then lower docId (the book id)
+        Collections.sort(reRankedResults);
+
+        return reRankedResults;
+    }
+
+    /**
+     * Same as reRank(tfIdfResults, query) but only the k best are kept, in a bounded heap,
+     * instead of sorting every result. Title boosts can lift any match to the top, so the
+     * input should still be every match, not a tf-idf top-k.
+     */
+    public List<SearchResult> reRank(List<SearchResult> tfIdfResults, String query, int k) {
+        ScoreBlend blend = blend(query);
+        TopKCollector topK = new TopKCollector(k, Comparator.naturalOrder());
+
+        for (SearchResult oldResult : tfIdfResults) {
+            double finalScore = blend.score(oldResult.getDocId(), oldResult.getScore());
+            if (!Double.isNaN(finalScore) && topK.competes(finalScore)) {
+                topK.offer(new SearchResult(oldResult.getDocId(), finalScore));
+            }
+        }
+        return topK.results();
+    }
+
+    /**
+     * The Master Formula and title boosts for one query, as a ScoreBlend: handed to
+     * QueryProcessor.search, it ranks the matches while they are collected, so they are never
+     * sorted twice. Reads the static scores once, like a reRank call. Titles are matched against
+     * the query's words without its operators (QueryParser.plainText).
+     */
+    public ScoreBlend blend(String query) {
+        return new Blend(staticScores, titleIndex.match(QueryParser.plainText(query).toLowerCase()));
+    }
 
-            double tfIdfScore = oldResult.getScore();
-            double normalizedRating = book.getRating() / 5.0;
-            double popularityScore = popularityMap.getOrDefault(docId, 0.0);
+    private final class Blend implements ScoreBlend {
+        private final StaticScores staticScores;
+        private final TitleIndex.Match titles;
+
+        Blend(StaticScores staticScores, TitleIndex.Match titles) {
+            this.staticScores = staticScores;
+            this.titles = titles;
+        }
+
+        // Final score of one result, NaN when its book is unknown
+        @Override
+        public double score(int docId, double tfIdfScore) {
+            Book book = bookMap.get(docId);
+            if (book == null) return Double.NaN;
 
             // --- 1. THE MASTER FORMULA (Base Score) ---
-            double finalScore = (W_TFIDF * tfIdfScore) +
-                    (W_RATING * normalizedRating) +
-                    (W_POPULARITY * popularityScore);
+            double finalScore = (W_TFIDF * tfIdfScore) + staticScores.of(docId, book);
 
             // --- 2. APPLY TIERED TITLE BOOSTS ---
-            // We apply boosts *after* calculating the base score.
-            if (book.getTitle() != null) {
-                String title = book.getTitle().toLowerCase();
-
-                // Use 'if-else if' to prevent stacking boosts
-                if (title.equals(cleanQuery)) {
-                    finalScore += EXACT_TITLE_BOOST;
-                } else if (title.startsWith(cleanQuery)) {
-                    finalScore += STARTS_WITH_BOOST;
-                } else if (title.contains(cleanQuery)) {
-                    finalScore += CONTAINS_BOOST;
-                }
+            // We apply boosts *after* calculating the base score; only the best tier applies.
+            switch (titles.tier(docId, book)) {
+                case EXACT: return finalScore + EXACT_TITLE_BOOST;
+                case STARTS_WITH: return finalScore + STARTS_WITH_BOOST;
+                case CONTAINS: return finalScore + CONTAINS_BOOST;
+                default: return finalScore;
             }
-
-            reRankedResults.add(new SearchResult(docId, finalScore));
         }
+    }
 
-        // --- 3. SORT BY FINAL SCORE & TIE-BREAK ---
-        // Your tie-breaker logic is perfect and is preserved here.
-        reRankedResults.sort((r1, r2) -> {
-            int scoreCompare = Double.compare(r2.getScore(), r1.getScore());
-            if (scoreCompare != 0) {
-                return scoreCompare; // Scores are different, just use that
+    // Rating and popularity part of the Master Formula
+    private static double staticScore(Book book, double popularity) {
+        return (W_RATING * (book.getRating() / 5.0)) + (W_POPULARITY * popularity);
+    }
+
+    /**
+     * staticScore of every book, computed when popularity is loaded, in an array by catalog
+     * ordinal. Books added to or replaced in the map since (IncrementalIndexer) have no ordinal
+     * in the catalog, so theirs is computed on the fly instead.
+     */
+    private static final class StaticScores {
+        final CatalogSnapshot catalog;
+        final double[] scores;
+        final Map<Integer, Double> popularity;
+
+        StaticScores(CatalogSnapshot catalog, Map<Integer, Double> popularity) {
+            this.catalog = catalog;
+            this.scores = new double[catalog.size()];
+            this.popularity = popularity;
+            for (int ordinal = 0; ordinal < scores.length; ordinal++) {
+                scores[ordinal] = staticScore(catalog.book(ordinal), popularity.getOrDefault(catalog.docId(ordinal), 0.0));
             }
-            // Scores are identical, use lower Book ID as tie-breaker
-            return Integer.compare(bookMap.get(r1.getDocId()).getBookId(), bookMap.get(r2.getDocId()).getBookId());
-        });
+        }
 
-        return reRankedResults;
+        double of(int docId, Book book) {
+            int ordinal = catalog.ordinal(docId, book);
+            if (ordinal >= 0) return scores[ordinal];
+            return staticScore(book, popularity.getOrDefault(docId, 0.0));
+        }
     }
-}
\ No newline at end of file
+}
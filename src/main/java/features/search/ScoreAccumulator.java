@@ -0,0 +1,89 @@
+package features.search;
+
+import java.util.Arrays;
+
+/**
+ * Term-at-a-time score accumulators: one double per document ordinal, plus the list of ordinals
+ * touched by the current query so a reset only clears those. Instances are pooled and used by
+ * one search at a time (see QueryProcessor), so scoring a query allocates nothing here once the
+ * arrays have grown.
+ */
+class ScoreAccumulator {
+
+    private double[] scores = new double[0];
+    private boolean[] touched = new boolean[0];
+    private int[] touchedOrdinals = new int[16];
+    private int touchedCount;
+
+    // Clears the previous query and makes room for docCount ordinals
+    void reset(int docCount) {
+        for (int i = 0; i < touchedCount; i++) {
+            int ord = touchedOrdinals[i];
+            scores[ord] = 0.0;
+            touched[ord] = false;
+        }
+        touchedCount = 0;
+        if (scores.length < docCount) {
+            scores = new double[docCount];
+            touched = new boolean[docCount];
+        }
+    }
+
+    void add(int docOrdinal, double value) {
+        if (!touched[docOrdinal]) {
+            touched[docOrdinal] = true;
+            if (touchedCount == touchedOrdinals.length) {
+                touchedOrdinals = Arrays.copyOf(touchedOrdinals, touchedCount * 2);
+            }
+            touchedOrdinals[touchedCount++] = docOrdinal;
+        }
+        scores[docOrdinal] += value;
+    }
+
+    // Term at a time: walks each query term's postings once, adding every document's share of the
+    // dot product (its weight is rebuilt from the freq and the idf)
+    void addAll(SearchIndex index, QueryVector queryVector) {
+        addAll(index, Similarity.cosine(), queryVector, QueryBudget.unlimited());
+    }
+
+    // Same with the document weights of a Similarity, stopping after the posting that spends the
+    // budget; the sums so far stay in place
+    void addAll(SearchIndex index, Similarity similarity, QueryVector queryVector, QueryBudget budget) {
+        for (int i = 0; i < queryVector.size; i++) {
+            int ordinal = queryVector.ordinals[i];
+            double queryWeight = queryVector.weights[i];
+
+            double idf = index.idf(ordinal);
+            PostingsCursor postings = index.postings(ordinal);
+            while (postings.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                if (!budget.visit(1)) return;
+                int docOrdinal = index.docOrdinal(postings.docId());
+                if (docOrdinal < 0) continue; // Not an indexed document, so never a result
+
+                double docWeight = similarity.docWeight(index, postings.docId(), postings.freq(), idf);
+                add(docOrdinal, queryWeight * docWeight);
+            }
+        }
+    }
+
+    // Number of documents touched since the last reset
+    int size() {
+        return touchedCount;
+    }
+
+    // Ordinal of the i-th touched document, in first-touch order
+    int ordinal(int i) {
+        return touchedOrdinals[i];
+    }
+
+    // Touched ordinals in increasing order, i.e. in docId order
+    int[] sortedOrdinals() {
+        int[] sorted = Arrays.copyOf(touchedOrdinals, touchedCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    double score(int docOrdinal) {
+        return scores[docOrdinal];
+    }
+}
@@ -0,0 +1,16 @@
+package features.search;
+
+/**
+ * Final ranking score of a match, from its document and relevance score (see
+ * ReRanker.blend()). QueryProcessor applies it while collecting the top-k, so retrieval and
+ * re-ranking are a single pass: it is called exactly once for every match, so a blend may also
+ * count or inspect the matches on the way. NaN drops the match.
+ */
+@FunctionalInterface
+public interface ScoreBlend {
+
+    // Ranks by relevance alone
+    ScoreBlend RELEVANCE = (docId, relevance) -> relevance;
+
+    double score(int docId, double relevance);
+}
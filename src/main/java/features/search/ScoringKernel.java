@@ -0,0 +1,69 @@
+package features.search;
+
+/**
+ * Inner loop of batch scoring (see BatchSearcher): adding one term's decoded postings into dense
+ * per-document sums.
+ *
+ * scalar() is plain Java. vector() runs the same adds through the JDK Vector API, a gather, a
+ * multiply-add and a scatter per SIMD register. It is only compiled by the simd Maven profile
+ * (mvn -Psimd), and only loads when the JVM was started with --add-modules jdk.incubator.vector;
+ * otherwise vector() is null and callers fall back to scalar().
+ * Both do the same IEEE multiplications and additions per document, so their sums are
+ * bit-identical.
+ */
+abstract class ScoringKernel {
+
+    // -Ddevshelf.simd=true turns vector scoring on by default (QueryProcessor.setVectorScoring)
+    static final String SIMD_PROPERTY = "devshelf.simd";
+
+    private static final ScoringKernel SCALAR = new Scalar();
+
+    static ScoringKernel scalar() {
+        return SCALAR;
+    }
+
+    // The Vector API kernel, or null when this JVM does not have the module
+    static ScoringKernel vector() {
+        return VectorHolder.KERNEL;
+    }
+
+    // vector() when asked for and available, scalar() otherwise
+    static ScoringKernel of(boolean vectorScoring) {
+        ScoringKernel vector = vectorScoring ? vector() : null;
+        return vector != null ? vector : SCALAR;
+    }
+
+    // scores[docOrdinals[i]] += weight * docWeights[i] for every i < size; the docOrdinals of one
+    // list are distinct, so no two lanes ever add to the same document
+    abstract void addAll(double[] scores, int[] docOrdinals, double[] docWeights, int size, double weight);
+
+    private static final class Scalar extends ScoringKernel {
+        @Override
+        void addAll(double[] scores, int[] docOrdinals, double[] docWeights, int size, double weight) {
+            for (int i = 0; i < size; i++) {
+                scores[docOrdinals[i]] += weight * docWeights[i];
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "scalar";
+        }
+    }
+
+    // Looked up by name on first use, so the scalar path never links the incubator classes
+    private static final class VectorHolder {
+        static final ScoringKernel KERNEL = load();
+
+        private static ScoringKernel load() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+            try {
+                return (ScoringKernel) Class.forName("features.search.VectorScoringKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector scoring unavailable, using scalar: " + e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package features.search;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs search requests off the caller's thread, one task per request.
+ *
+ * In virtual-thread mode every request gets its own virtual thread, so thousands of waiting
+ * requests cost no platform threads. Virtual threads only exist from Java 21 on; the factory is
+ * looked up at runtime, so the same Java 17 build uses them when it runs on 21+ and falls back
+ * to a pool of one platform thread per core otherwise.
+ *
+ * The read path (QueryProcessor, ReRanker, Suggester, Graph.recommendPopularBooks) is safe for
+ * concurrent use, so requests can share one set of components.
+ */
+public class SearchExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private SearchExecutor(ExecutorService executor, boolean virtualThreads) {
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+    }
+
+    // A virtual thread per request when the runtime has them, otherwise platformThreads(cores)
+    public static SearchExecutor virtualThreads() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new SearchExecutor((ExecutorService) factory.invoke(null), true);
+        } catch (ReflectiveOperationException e) { // Before Java 21
+            return platformThreads(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    // A fixed pool of daemon threads, so a forgotten executor never keeps the app alive
+    public static SearchExecutor platformThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread: " + threads);
+        }
+        return new SearchExecutor(Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "search-worker");
+            thread.setDaemon(true);
+            return thread;
+        }), false);
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> request) {
+        return CompletableFuture.supplyAsync(request, executor);
+    }
+
+    // Stops taking requests and waits for the running ones
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package features.search;
+
+import domain.SearchIndexData;
+
+import java.util.Map;
+
+/**
+ * Read-only view of a built index, as used by the QueryProcessor.
+ * PackedSearchIndex serves the JSON format from flat arrays, HeapSearchIndex serves an editable
+ * SearchIndexData and storage.MappedIndex serves the binary format.
+ */
+public interface SearchIndex {
+
+    // Number of indexed documents
+    int docCount();
+
+    int termCount();
+
+    // Dense ordinal of a term in [0, termCount), or -1 when the term is not indexed.
+    // Ordinals are only meaningful for the index that returned them.
+    int termOrdinal(String term);
+
+    String term(int termOrdinal);
+
+    // Ordinal of the first term >= term in dictionary order, termCount() when there is none.
+    // Ordinals follow the sorted term order, so all terms sharing a prefix form one ordinal range.
+    int ceilingTermOrdinal(String term);
+
+    double idf(int termOrdinal);
+
+    PostingsCursor postings(int termOrdinal);
+
+    // IDF of a term, 0.0 when the term is not indexed
+    default double idf(String term) {
+        int ord = termOrdinal(term);
+        return ord < 0 ? 0.0 : idf(ord);
+    }
+
+    // Postings of a term, or null when the term is not indexed
+    default PostingsCursor postings(String term) {
+        int ord = termOrdinal(term);
+        return ord < 0 ? null : postings(ord);
+    }
+
+    // Upper bound of tf * |idf| / docNorm over a term's postings: with query weight w and query
+    // norm q, no document gets more than |w| * maxScore / q from the term. Used for pruning.
+    double maxScore(int termOrdinal);
+
+    // Dense ordinal of a document in [0, docCount), following docId order, or -1 when it is not indexed.
+    // Lets scorers keep per-document state in arrays (see ScoreAccumulator).
+    int docOrdinal(int docId);
+
+    int docId(int docOrdinal);
+
+    // L2 norm of a document's TF-IDF vector, 0.0 for unknown documents
+    double docNorm(int docId);
+
+    // Number of indexed tokens in a document, 0 for unknown documents
+    int docLength(int docId);
+
+    // Mean docLength over the indexed documents, 0.0 for an empty index. Implementations
+    // compute it once; this default walks every document.
+    default double averageDocLength() {
+        long total = 0;
+        for (int ord = 0; ord < docCount(); ord++) {
+            total += docLength(docId(ord));
+        }
+        return docCount() == 0 ? 0.0 : (double) total / docCount();
+    }
+
+    // TF-IDF weight of each of a document's terms (for "more like this" and similar), empty for unknown documents.
+    // Indexes that do not store vectors derive them on first use.
+    Map<String, Double> docVector(int docId);
+
+    // Editable in-memory copy (or the backing data itself) for incremental updates and JSON export
+    SearchIndexData toIndexData();
+}
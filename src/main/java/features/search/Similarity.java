@@ -0,0 +1,186 @@
+package features.search;
+
+import utils.TfIdfCalculator;
+
+/**
+ * How matching documents are scored from the postings of the query terms. Every scorer sums
+ * queryWeight * docWeight over a document's query terms, in query-term order, and turns the sum
+ * into the final score with score(); only freq, the precomputed per-document values (docNorm,
+ * docLength) and the idf are read, never a document vector.
+ *
+ * cosine() is the original ranking and the default: TF-IDF weights, divided by the document and
+ * query norms. bm25() saturates the term frequency and normalizes by document length instead.
+ * Its sum is divided by the largest score the query could reach, so both land in [0, 1] and the
+ * ReRanker blend and phrase boosts keep their meaning. Running the app with
+ * -Ddevshelf.similarity=bm25 makes BM25 the default.
+ *
+ * Instances are shared by concurrent searches: the only state, BM25's per-term bounds, is
+ * replaced whole and never modified in place.
+ */
+public abstract class Similarity {
+
+    // -Ddevshelf.similarity=bm25 makes BM25 the default of every QueryProcessor (see named())
+    public static final String SIMILARITY_PROPERTY = "devshelf.similarity";
+
+    public static Similarity cosine() {
+        return Cosine.INSTANCE;
+    }
+
+    // Usual parameters: k1 = 1.2 (tf saturation), b = 0.75 (length normalization)
+    public static Similarity bm25() {
+        return bm25(1.2, 0.75);
+    }
+
+    public static Similarity bm25(double k1, double b) {
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("BM25 needs k1 >= 0 and 0 <= b <= 1: k1=" + k1 + ", b=" + b);
+        }
+        return new Bm25(k1, b);
+    }
+
+    // "cosine" or "bm25" (default parameters), as given to -Ddevshelf.similarity; null means cosine
+    public static Similarity named(String name) {
+        if (name == null || name.equalsIgnoreCase("cosine")) return cosine();
+        if (name.equalsIgnoreCase("bm25")) return bm25();
+        throw new IllegalArgumentException("Unknown similarity '" + name + "': expected cosine or bm25");
+    }
+
+    // Weight of a query term that occurs count times in the query
+    abstract double queryWeight(SearchIndex index, int termOrdinal, int count);
+
+    // Weight of one posting of a term: freq occurrences in document docId
+    abstract double docWeight(SearchIndex index, int docId, int freq, double idf);
+
+    // Per-query normalizer of the summed weights, 0 when nothing can score
+    abstract double queryNorm(SearchIndex index, QueryVector queryVector);
+
+    // Final score of a document from its summed queryWeight * docWeight
+    abstract double score(SearchIndex index, int docId, double sum, double queryNorm);
+
+    // Upper bound of what one query term adds to any document's final score (MaxScore pruning)
+    abstract double maxScore(SearchIndex index, int termOrdinal, double queryWeight, double queryNorm);
+
+    private static final class Cosine extends Similarity {
+        static final Cosine INSTANCE = new Cosine();
+
+        @Override
+        double queryWeight(SearchIndex index, int termOrdinal, int count) {
+            return TfIdfCalculator.tf(count) * index.idf(termOrdinal);
+        }
+
+        @Override
+        double docWeight(SearchIndex index, int docId, int freq, double idf) {
+            return TfIdfCalculator.tf(freq) * idf;
+        }
+
+        @Override
+        double queryNorm(SearchIndex index, QueryVector queryVector) {
+            return Math.sqrt(queryVector.squaredNorm());
+        }
+
+        @Override
+        double score(SearchIndex index, int docId, double sum, double queryNorm) {
+            double docNorm = index.docNorm(docId);
+            // Prevent division by zero
+            if (queryNorm == 0.0 || docNorm == 0.0) {
+                return 0.0;
+            }
+            return sum / (queryNorm * docNorm);
+        }
+
+        @Override
+        double maxScore(SearchIndex index, int termOrdinal, double queryWeight, double queryNorm) {
+            return Math.abs(queryWeight) * index.maxScore(termOrdinal) / queryNorm;
+        }
+
+        @Override
+        public String toString() {
+            return "cosine";
+        }
+    }
+
+    private static final class Bm25 extends Similarity {
+        private final double k1;
+        private final double b;
+        // Largest tf part of docWeight per term of the last index scored, for maxScore. Built on
+        // first use from every posting, like the cosine maxScores when an index is loaded.
+        private volatile TfBounds tfBounds;
+
+        Bm25(double k1, double b) {
+            this.k1 = k1;
+            this.b = b;
+        }
+
+        private static final class TfBounds {
+            final SearchIndex index;
+            final double[] max;
+
+            TfBounds(SearchIndex index, double[] max) {
+                this.index = index;
+                this.max = max;
+            }
+        }
+
+        // Repeating a word in the query counts it again
+        @Override
+        double queryWeight(SearchIndex index, int termOrdinal, int count) {
+            return count;
+        }
+
+        @Override
+        double docWeight(SearchIndex index, int docId, int freq, double idf) {
+            return idf * tf(index, docId, freq);
+        }
+
+        // Saturating term frequency, normalized by document length; always below k1 + 1
+        private double tf(SearchIndex index, int docId, int freq) {
+            double averageLength = index.averageDocLength();
+            double lengthRatio = averageLength > 0 ? index.docLength(docId) / averageLength : 1.0;
+            return freq * (k1 + 1) / (freq + k1 * (1 - b + b * lengthRatio));
+        }
+
+        // The tf part of docWeight stays below k1 + 1, so no document can score more than this
+        @Override
+        double queryNorm(SearchIndex index, QueryVector queryVector) {
+            double ceiling = 0.0;
+            for (int i = 0; i < queryVector.size; i++) {
+                ceiling += Math.abs(queryVector.weights[i]) * Math.abs(index.idf(queryVector.ordinals[i])) * (k1 + 1);
+            }
+            return ceiling;
+        }
+
+        @Override
+        double score(SearchIndex index, int docId, double sum, double queryNorm) {
+            return queryNorm == 0.0 ? 0.0 : sum / queryNorm;
+        }
+
+        @Override
+        double maxScore(SearchIndex index, int termOrdinal, double queryWeight, double queryNorm) {
+            return Math.abs(queryWeight) * Math.abs(index.idf(termOrdinal)) * maxTf(index, termOrdinal) / queryNorm;
+        }
+
+        // Terms an ExpandedTermIndex added for one query get the k1 + 1 ceiling instead
+        private double maxTf(SearchIndex index, int termOrdinal) {
+            SearchIndex base = index instanceof ExpandedTermIndex ? ((ExpandedTermIndex) index).getDelegate() : index;
+            if (termOrdinal >= base.termCount()) return k1 + 1;
+            TfBounds bounds = tfBounds;
+            if (bounds == null || bounds.index != base) {
+                double[] max = new double[base.termCount()];
+                for (int ord = 0; ord < max.length; ord++) {
+                    PostingsCursor postings = base.postings(ord);
+                    while (postings.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                        max[ord] = Math.max(max[ord], tf(base, postings.docId(), postings.freq()));
+                    }
+                }
+                bounds = new TfBounds(base, max);
+                tfBounds = bounds;
+            }
+            return bounds.max[termOrdinal];
+        }
+
+        @Override
+        public String toString() {
+            return "bm25(k1=" + k1 + ", b=" + b + ")";
+        }
+    }
+}
@@ -2,17 +2,24 @@ package features.search;
 
 import java.util.*;
 
+// Holds private read-only copies of its inputs, so concurrent suggestSimilar calls are safe
 public class Suggester {
     private final List<String> allTitles;
     private final Set<String> stopwords;
 
     public Suggester(List<String> titles, Set<String> stopwords) {
-        this.allTitles = titles != null ? titles : new ArrayList<>();
-        this.stopwords = stopwords != null ? stopwords : new HashSet<>();
+        this.allTitles = titles != null ? Collections.unmodifiableList(new ArrayList<>(titles)) : Collections.emptyList();
+        this.stopwords = stopwords != null ? Collections.unmodifiableSet(new HashSet<>(stopwords)) : Collections.emptySet();
     }
 
 
     public String suggestSimilar(String query) {
+        return suggestSimilar(query, QueryBudget.unlimited());
+    }
+
+    // Checks the budget's deadline before every title; once it has passed, the best title so far
+    // is still suggested if it clears the threshold
+    public String suggestSimilar(String query, QueryBudget budget) {
         if (query == null || query.trim().isEmpty()) return null;
 
         String cleanedQuery = preprocess(query);
@@ -22,6 +29,7 @@ public class Suggester {
         String bestMatch = null;
 
         for (String title : allTitles) {
+            if (budget.exhausted()) break;
             if (title == null || title.trim().isEmpty()) continue;
 
             String cleanedTitle = preprocess(title);
@@ -0,0 +1,49 @@
+package features.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Sorted array of the distinct terms of an index. A term's position in the array is its
+ * ordinal: a dense int in [0, size) that the rest of the index uses instead of the String.
+ * Lookups binary-search the array, so resolving a query term never hashes it.
+ */
+public class TermDictionary {
+
+    private final String[] terms;
+
+    private TermDictionary(String[] sortedTerms) {
+        this.terms = sortedTerms;
+    }
+
+    public static TermDictionary of(Collection<String> terms) {
+        String[] sorted = terms.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return new TermDictionary(sorted);
+    }
+
+    // Takes ownership of the array, which must already be sorted and free of duplicates
+    static TermDictionary ofSorted(String[] sortedTerms) {
+        return new TermDictionary(sortedTerms);
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    // Ordinal of the term, or -1 when it is not in the dictionary
+    public int ordinal(String term) {
+        int ord = Arrays.binarySearch(terms, term);
+        return ord < 0 ? -1 : ord;
+    }
+
+    // Ordinal of the first term >= term, size() when every term is smaller
+    public int ceiling(String term) {
+        int ord = Arrays.binarySearch(terms, term);
+        return ord < 0 ? -ord - 1 : ord;
+    }
+
+    public String term(int ordinal) {
+        return terms[ordinal];
+    }
+}
@@ -0,0 +1,213 @@
+package features.search;
+
+import domain.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Title field of the catalog, for ReRanker's title boosts. Built once from the catalog, so the
+ * boost of a result is decided by lookups instead of string work on its title:
+ *  - every title lowercased once, and all of them sorted: the titles starting with a query are
+ *    one range of that order, found by binary search
+ *  - a hash from each exact title to its range of that order
+ *  - title-token postings (token to books and positions), for the titles that contain the
+ *    query's words as a phrase
+ *
+ * A book is found through its ordinal in the CatalogSnapshot the index was built from. A book
+ * put in the map after the build (IncrementalIndexer) has none; its tier is worked out from its
+ * title string instead, with the same rules.
+ */
+class TitleIndex {
+
+    enum Tier { NONE, CONTAINS, STARTS_WITH, EXACT }
+
+    private final CatalogSnapshot catalog;
+    private final String[] sortedTitles;    // lowercased, sorted
+    private final int[] rank;               // position of a book's title in sortedTitles, -1 without a title
+    private final Map<String, int[]> exact; // title -> {from, to} in sortedTitles
+    private final Map<String, TokenPostings> tokens;
+
+    // Books (ordinals, ascending) whose title has a token, and the token's positions in each
+    private static final class TokenPostings {
+        final int[] ordinals;
+        final int[][] positions;
+
+        TokenPostings(int[] ordinals, int[][] positions) {
+            this.ordinals = ordinals;
+            this.positions = positions;
+        }
+    }
+
+    TitleIndex(CatalogSnapshot catalog) {
+        this.catalog = catalog;
+        String[] titles = new String[catalog.size()];
+        Map<String, List<int[]>> postings = new HashMap<>(); // token -> {ordinal, position}, by ordinal
+        List<Integer> titled = new ArrayList<>();
+        for (int ordinal = 0; ordinal < titles.length; ordinal++) {
+            String title = catalog.book(ordinal).getTitle();
+            if (title == null) continue;
+            titles[ordinal] = title.toLowerCase();
+            titled.add(ordinal);
+            List<String> titleTokens = tokenize(titles[ordinal]);
+            for (int position = 0; position < titleTokens.size(); position++) {
+                postings.computeIfAbsent(titleTokens.get(position), t -> new ArrayList<>()).add(new int[]{ordinal, position});
+            }
+        }
+
+        titled.sort((a, b) -> titles[a].compareTo(titles[b]));
+        sortedTitles = new String[titled.size()];
+        rank = new int[titles.length];
+        Arrays.fill(rank, -1);
+        exact = new HashMap<>();
+        for (int i = 0; i < sortedTitles.length; i++) {
+            sortedTitles[i] = titles[titled.get(i)];
+            rank[titled.get(i)] = i;
+            int first = i; // equal titles are next to each other
+            exact.computeIfAbsent(sortedTitles[i], t -> new int[]{first, first})[1] = i + 1;
+        }
+
+        tokens = new HashMap<>();
+        postings.forEach((token, list) -> tokens.put(token, toPostings(list)));
+    }
+
+    private static TokenPostings toPostings(List<int[]> list) {
+        int books = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (i == 0 || list.get(i)[0] != list.get(i - 1)[0]) books++;
+        }
+        int[] ordinals = new int[books];
+        int[][] positions = new int[books][];
+        int book = -1;
+        for (int i = 0; i < list.size(); i++) {
+            int start = i;
+            while (i + 1 < list.size() && list.get(i + 1)[0] == list.get(start)[0]) i++;
+            ordinals[++book] = list.get(start)[0];
+            positions[book] = new int[i - start + 1];
+            for (int j = start; j <= i; j++) {
+                positions[book][j - start] = list.get(j)[1];
+            }
+        }
+        return new TokenPostings(ordinals, positions);
+    }
+
+    // Words of a lowercased title or query: runs of letters and digits, with + and # kept so
+    // "c++" and "c#" stay words
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && isWordChar(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '+' || c == '#';
+    }
+
+    // Tiers of every title for one lowercased query, operators removed (QueryParser.plainText)
+    Match match(String cleanQuery) {
+        return new Match(cleanQuery);
+    }
+
+    final class Match {
+        private final String query;
+        private final int exactFrom, exactTo;
+        private final int prefixFrom, prefixTo;
+        private final int[] phrase; // ordinals of the titles containing the query's words, ascending
+
+        private Match(String query) {
+            this.query = query;
+            int[] range = exact.getOrDefault(query, new int[]{0, 0});
+            exactFrom = range[0];
+            exactTo = range[1];
+            // The titles starting with the query come first among those not below it
+            prefixFrom = firstAtLeast(query);
+            int lo = prefixFrom, hi = sortedTitles.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sortedTitles[mid].startsWith(query)) lo = mid + 1;
+                else hi = mid;
+            }
+            prefixTo = lo;
+            phrase = phrase(tokenize(query));
+        }
+
+        // Boost tier of a known book; the best one applies, they never stack
+        Tier tier(int docId, Book book) {
+            int ordinal = catalog.ordinal(docId, book);
+            if (ordinal < 0) return tierOf(book.getTitle(), query);
+            int r = rank[ordinal];
+            if (r < 0) return Tier.NONE;
+            if (r >= exactFrom && r < exactTo) return Tier.EXACT;
+            if (r >= prefixFrom && r < prefixTo) return Tier.STARTS_WITH;
+            return Arrays.binarySearch(phrase, ordinal) >= 0 ? Tier.CONTAINS : Tier.NONE;
+        }
+    }
+
+    private int firstAtLeast(String query) {
+        int lo = 0, hi = sortedTitles.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedTitles[mid].compareTo(query) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Books whose title has the words at consecutive positions, walking the first word's postings
+    private int[] phrase(List<String> words) {
+        if (words.isEmpty()) return new int[0];
+        TokenPostings[] lists = new TokenPostings[words.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = tokens.get(words.get(i));
+            if (lists[i] == null) return new int[0];
+        }
+
+        int[] found = new int[lists[0].ordinals.length];
+        int size = 0;
+        for (int b = 0; b < lists[0].ordinals.length; b++) {
+            int ordinal = lists[0].ordinals[b];
+            int[][] positions = new int[lists.length][];
+            positions[0] = lists[0].positions[b];
+            boolean all = true;
+            for (int i = 1; i < lists.length && all; i++) {
+                int at = Arrays.binarySearch(lists[i].ordinals, ordinal);
+                if (at < 0) all = false;
+                else positions[i] = lists[i].positions[at];
+            }
+            if (all && startsPhrase(positions)) found[size++] = ordinal;
+        }
+        return Arrays.copyOf(found, size);
+    }
+
+    private static boolean startsPhrase(int[][] positions) {
+        for (int start : positions[0]) {
+            int i = 1;
+            while (i < positions.length && Arrays.binarySearch(positions[i], start + i) >= 0) i++;
+            if (i == positions.length) return true;
+        }
+        return false;
+    }
+
+    // Same tiers from the strings, for a book the index was not built with
+    static Tier tierOf(String title, String cleanQuery) {
+        if (title == null) return Tier.NONE;
+        String lowerTitle = title.toLowerCase();
+        if (lowerTitle.equals(cleanQuery)) return Tier.EXACT;
+        if (lowerTitle.startsWith(cleanQuery)) return Tier.STARTS_WITH;
+        List<String> words = tokenize(cleanQuery);
+        return !words.isEmpty() && Collections.indexOfSubList(tokenize(lowerTitle), words) >= 0 ? Tier.CONTAINS : Tier.NONE;
+    }
+}
@@ -0,0 +1,56 @@
+package features.search;
+
+import domain.SearchResult;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k best results offered so far in a bounded min-heap: the worst kept result sits on
+ * top, so a candidate either loses against it straight away or replaces it in O(log k).
+ * Only the survivors are sorted, never the whole candidate set.
+ */
+class TopKCollector {
+
+    private final int k;
+    private final Comparator<SearchResult> ranking;
+    private final PriorityQueue<SearchResult> heap;
+
+    // ranking orders best first, like the sort it replaces
+    TopKCollector(int k, Comparator<SearchResult> ranking) {
+        this.k = Math.max(k, 0);
+        this.ranking = ranking;
+        this.heap = new PriorityQueue<>(Math.min(this.k, 64) + 1, ranking.reversed());
+    }
+
+    // Cheap rejection before building a SearchResult; rankings here always put higher scores first
+    boolean competes(double score) {
+        if (heap.size() < k) return true;
+        return k > 0 && score >= heap.peek().getScore();
+    }
+
+    // Score a new result has to reach to get in; anything goes until k results are kept
+    double threshold() {
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().getScore();
+    }
+
+    void offer(SearchResult result) {
+        if (heap.size() < k) {
+            heap.add(result);
+        } else if (k > 0 && ranking.compare(result, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(result);
+        }
+    }
+
+    // The kept results, best first
+    List<SearchResult> results() {
+        SearchResult[] sorted = new SearchResult[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = heap.poll();
+        }
+        return Arrays.asList(sorted);
+    }
+}
@@ -0,0 +1,31 @@
+package features.search;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * ScoringKernel on the JDK Vector API, at the widest width the CPU has (4 doubles with AVX2,
+ * 8 with AVX-512). Only loaded through ScoringKernel.vector().
+ */
+final class VectorScoringKernel extends ScoringKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void addAll(double[] scores, int[] docOrdinals, double[] docWeights, int size, double weight) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(size); i < bound; i += SPECIES.length()) {
+            DoubleVector sums = DoubleVector.fromArray(SPECIES, scores, 0, docOrdinals, i);
+            DoubleVector added = DoubleVector.fromArray(SPECIES, docWeights, i).mul(weight);
+            sums.add(added).intoArray(scores, 0, docOrdinals, i);
+        }
+        for (; i < size; i++) {
+            scores[docOrdinals[i]] += weight * docWeights[i];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "vector x" + SPECIES.length();
+    }
+}
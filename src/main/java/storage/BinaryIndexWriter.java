@@ -0,0 +1,165 @@
+package storage;
+
+import domain.Posting;
+import domain.SearchIndexData;
+import utils.TfIdfCalculator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a SearchIndexData in the binary format read by MappedIndex.
+ *
+ * Layout (big-endian, every section starts on an 8-byte boundary):
+ *   header      64 bytes: magic, version, termCount, docCount, body CRC32, section offsets, file length
+ *   termOffsets int[termCount + 1]  start of each term inside termBytes
+ *   termBytes   UTF-8 terms, sorted by unsigned byte order
+ *   docFreqs    int[termCount]
+ *   idf         double[termCount]
+ *   postings    per term, a PostingsCodec-compressed list (delta + varint docIds, freqs, positions)
+ *   postingOffs int[termCount + 1]  absolute file offset of each term's postings
+ *   docIds      int[docCount]      sorted
+ *   docNorms    double[docCount]   L2 norm of each document's TF-IDF vector
+ *   docLengths  int[docCount]      number of indexed tokens in each document
+ *   maxScores   double[termCount]  max of tf * |idf| / docNorm over each term's postings (pruning bound)
+ */
+public class BinaryIndexWriter {
+
+    public static void write(SearchIndexData indexData, File file) throws IOException {
+        Map<String, List<Posting>> invertedIndex = indexData.getInvertedIndex();
+        Map<Integer, Map<String, Double>> tfIdfVectors = indexData.getTfIdfVectors();
+        Map<String, Double> idfScores = indexData.getIdfScores();
+        Map<Integer, Double> docNorms = indexData.getDocNorms() != null
+                ? indexData.getDocNorms() : TfIdfCalculator.docNorms(tfIdfVectors);
+        Map<Integer, Integer> docLengths = indexData.getDocLengths() != null
+                ? indexData.getDocLengths() : TfIdfCalculator.docLengths(invertedIndex);
+
+        // 1. Sorted term dictionary
+        Map<String, byte[]> termBytes = new HashMap<>();
+        for (String term : invertedIndex.keySet()) {
+            termBytes.put(term, term.getBytes(StandardCharsets.UTF_8));
+        }
+        List<String> terms = new ArrayList<>(invertedIndex.keySet());
+        terms.sort((a, b) -> MappedIndex.compareUtf8(termBytes.get(a), termBytes.get(b)));
+
+        // 2. Document table
+        int[] docIds = docNorms.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+
+        int[] sections = new int[MappedIndex.SECTION_COUNT];
+        CRC32 crc = new CRC32();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.seek(MappedIndex.HEADER_SIZE);
+
+            SectionOutput out = new SectionOutput(new CheckedOutputStream(new FileOutputStream(raf.getFD()), crc));
+
+            sections[MappedIndex.TERM_OFFSETS] = out.align();
+            int offset = 0;
+            out.writeInt(offset);
+            for (String term : terms) {
+                offset += termBytes.get(term).length;
+                out.writeInt(offset);
+            }
+
+            sections[MappedIndex.TERM_BYTES] = out.align();
+            for (String term : terms) {
+                out.write(termBytes.get(term));
+            }
+
+            sections[MappedIndex.DOC_FREQS] = out.align();
+            for (String term : terms) {
+                out.writeInt(invertedIndex.get(term).size());
+            }
+
+            sections[MappedIndex.IDF] = out.align();
+            for (String term : terms) {
+                out.writeDouble(idfScores.getOrDefault(term, 0.0));
+            }
+
+            sections[MappedIndex.POSTINGS] = out.align();
+            int[] postingOffsets = new int[terms.size() + 1];
+            for (int i = 0; i < terms.size(); i++) {
+                postingOffsets[i] = out.position();
+                out.write(PostingsCodec.encode(invertedIndex.get(terms.get(i))));
+            }
+            postingOffsets[terms.size()] = out.position();
+
+            sections[MappedIndex.POSTING_OFFSETS] = out.align();
+            for (int postingOffset : postingOffsets) {
+                out.writeInt(postingOffset);
+            }
+
+            sections[MappedIndex.DOC_IDS] = out.align();
+            for (int docId : docIds) {
+                out.writeInt(docId);
+            }
+
+            sections[MappedIndex.DOC_NORMS] = out.align();
+            for (int docId : docIds) {
+                out.writeDouble(docNorms.get(docId));
+            }
+
+            sections[MappedIndex.DOC_LENGTHS] = out.align();
+            for (int docId : docIds) {
+                out.writeInt(docLengths.getOrDefault(docId, 0));
+            }
+
+            sections[MappedIndex.MAX_SCORES] = out.align();
+            for (String term : terms) {
+                out.writeDouble(TfIdfCalculator.maxScore(invertedIndex.get(term), idfScores.getOrDefault(term, 0.0), docNorms));
+            }
+
+            out.flush();
+            int length = out.position();
+
+            // Header last, once the offsets and the checksum are known
+            raf.seek(0);
+            raf.writeInt(MappedIndex.MAGIC);
+            raf.writeInt(MappedIndex.VERSION);
+            raf.writeInt(terms.size());
+            raf.writeInt(docIds.length);
+            raf.writeInt((int) crc.getValue());
+            for (int section : sections) {
+                raf.writeInt(section);
+            }
+            raf.writeInt(length);
+        }
+    }
+
+    // DataOutputStream that knows the absolute file offset of what it writes next
+    private static class SectionOutput extends DataOutputStream {
+
+        SectionOutput(OutputStream out) {
+            super(new BufferedOutputStream(out, 1 << 16));
+        }
+
+        // Pads to the next 8-byte boundary and returns the resulting offset
+        int align() throws IOException {
+            while (position() % 8 != 0) {
+                writeByte(0);
+            }
+            return position();
+        }
+
+        int position() throws IOException {
+            long position = MappedIndex.HEADER_SIZE + (long) size();
+            if (size() == Integer.MAX_VALUE || position > Integer.MAX_VALUE) {
+                throw new IOException("Index is larger than 2 GB and cannot be mapped in one piece");
+            }
+            return (int) position;
+        }
+    }
+}
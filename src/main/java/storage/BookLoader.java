@@ -1,45 +1,64 @@
 package storage;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import domain.Book;
 
 import java.io.File;
 
 import utils.StorageUtils;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Reads book.json. The file is streamed with a JsonParser and books are handed out one at a time,
+ * so only the book being parsed is held in memory no matter how large the catalog is.
+ * The list methods are kept for callers that need every book at once.
+ */
 public class BookLoader {
     private final String resourcePath; // e.g., "/data/book.json"
 
+    private static final ObjectReader BOOK_READER = new ObjectMapper().readerFor(Book.class);
+
     public BookLoader(String resourcePath) {
         this.resourcePath = resourcePath;
     }
 
     // Add a new method specifically for the Indexer
     public List<Book> loadBooksFromSource(String path) {
-        ObjectMapper mapper = new ObjectMapper();
+        List<Book> books = new ArrayList<>();
         try {
-            // Reads directly from the project folder, ignoring AppData
-            return mapper.readValue(new File("src/main/resources" + path), new TypeReference<List<Book>>() {});
+            streamBooksFromSource(path, books::add);
+            return books;
         } catch (IOException e) {
             e.printStackTrace();
             return Collections.emptyList();
         }
     }
 
-    public List<Book> loadBooks() {
-        ObjectMapper mapper = new ObjectMapper();
+    // Streams the project folder copy, ignoring AppData. Returns the number of books read.
+    public int streamBooksFromSource(String path, Consumer<Book> consumer) throws IOException {
+        try (InputStream in = new FileInputStream("src/main/resources" + path)) {
+            return streamBooks(in, consumer);
+        }
+    }
 
+    public List<Book> loadBooks() {
         // 1. Try Loading from AppData (The Update)
         File updatedFile = new File(StorageUtils.getAppDataDir(), "book.json");
         if (updatedFile.exists()) {
-            try {
+            try (InputStream in = new FileInputStream(updatedFile)) {
                 System.out.println("📂 Loading books from local update...");
-                return mapper.readValue(updatedFile, new TypeReference<List<Book>>() {});
+                List<Book> books = new ArrayList<>();
+                streamBooks(in, books::add);
+                return books;
             } catch (Exception e) {
                 e.printStackTrace(); // Fallback if corrupt
             }
@@ -47,12 +66,57 @@ public class BookLoader {
 
         // 2. Fallback to JAR (Factory Default)
         System.out.println("📦 Loading factory default books...");
+        List<Book> books = new ArrayList<>();
         try (InputStream inputStream = getClass().getResourceAsStream(resourcePath)) {
-            return mapper.readValue(inputStream, new TypeReference<List<Book>>() {});
+            streamBooks(inputStream, books::add);
+            return books;
         } catch (IOException e) {
             return Collections.emptyList();
         }
     }
 
+    /**
+     * Same sources and fallback as loadBooks(), without building the list.
+     * If the local update turns out to be corrupt halfway, the factory books are streamed after
+     * the ones already delivered, so the consumer should key books by id (e.g. fill a map).
+     */
+    public int streamBooks(Consumer<Book> consumer) {
+        File updatedFile = new File(StorageUtils.getAppDataDir(), "book.json");
+        if (updatedFile.exists()) {
+            try (InputStream in = new FileInputStream(updatedFile)) {
+                System.out.println("📂 Streaming books from local update...");
+                return streamBooks(in, consumer);
+            } catch (Exception e) {
+                e.printStackTrace(); // Fallback if corrupt
+            }
+        }
+
+        System.out.println("📦 Streaming factory default books...");
+        try (InputStream inputStream = getClass().getResourceAsStream(resourcePath)) {
+            return streamBooks(inputStream, consumer);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Parses a JSON array of books element by element; nulls in the array are skipped
+    public static int streamBooks(InputStream in, Consumer<Book> consumer) throws IOException {
+        if (in == null) throw new IOException("Book source not found");
+        try (JsonParser parser = BOOK_READER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of books at " + parser.getCurrentLocation());
+            }
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) throw new IOException("Unexpected end of book file");
+                if (token == JsonToken.VALUE_NULL) continue;
+                consumer.accept(BOOK_READER.readValue(parser));
+                count++;
+            }
+            return count;
+        }
+    }
+
 }
 // Work on book.json - open and parson book.json
\ No newline at end of file
@@ -0,0 +1,73 @@
+package storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import domain.JournalEntry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only write-ahead log of index changes, one JSON line per change.
+ * Every append is forced to disk before it returns, so a change the caller saw succeed
+ * survives a crash and is replayed on the next start.
+ */
+public class IndexJournal {
+
+    private final File journalFile;
+    private final ObjectMapper mapper;
+
+    public IndexJournal(String journalPath) {
+        this.journalFile = new File(journalPath);
+        this.mapper = new ObjectMapper();
+    }
+
+    public void append(JournalEntry entry) throws IOException {
+        byte[] line = (mapper.writeValueAsString(entry) + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8);
+
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(line);
+            out.getFD().sync(); // Durable before we touch the in-memory index
+        }
+    }
+
+    public List<JournalEntry> readAll() {
+        List<JournalEntry> entries = new ArrayList<>();
+        if (!journalFile.exists()) return entries;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty()) continue;
+                try {
+                    entries.add(mapper.readValue(line, JournalEntry.class));
+                } catch (IOException e) {
+                    // A torn last line is what a crash mid-append leaves behind; that change was never acknowledged
+                    System.err.println("⚠️ Skipping unreadable journal line " + lineNo + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading index journal: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    public boolean isEmpty() {
+        return !journalFile.exists() || journalFile.length() == 0;
+    }
+
+    // Called once the changes are safely part of a saved index
+    public void clear() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(journalFile, false)) {
+            out.getFD().sync();
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package storage;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import domain.SearchIndexData;
+import features.search.PackedSearchIndex;
+import features.search.SearchIndex;
 import utils.StorageUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
 
 public class IndexLoader {
     private final String resourcePath;
@@ -15,30 +24,90 @@ public class IndexLoader {
         this.resourcePath = resourcePath;
     }
 
-    public SearchIndexData loadIndex() {
-        ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Loads the newest available index in whichever format it was saved.
+     * Binary indexes are memory-mapped, JSON indexes are parsed into a PackedSearchIndex.
+     * Order: newest of AppData index.bin / index.json, then bundled .bin, then bundled .json.
+     */
+    public SearchIndex load() {
+        // 1️⃣ Local updates, most recently written first
+        File[] updates = {
+                new File(StorageUtils.getAppDataDir(), "index.bin"),
+                new File(StorageUtils.getAppDataDir(), "index.json")
+        };
+        Arrays.sort(updates, Comparator.comparingLong(File::lastModified).reversed());
+        for (File updatedFile : updates) {
+            if (updatedFile.exists()) {
+                try {
+                    System.out.println("📂 Loading index from local update (" + updatedFile.getName() + ")...");
+                    return open(updatedFile);
+                } catch (IOException e) {
+                    e.printStackTrace(); // Fallback if file is corrupt
+                }
+            }
+        }
 
-        // 1️⃣ Try loading from AppData (Updated version)
-        File updatedFile = new File(StorageUtils.getAppDataDir(), "index.json");
-        if (updatedFile.exists()) {
+        // 2️⃣ Factory default: prefer the binary twin of the JSON resource
+        String binaryPath = resourcePath.replaceFirst("\\.json$", ".bin");
+        URL binaryUrl = getClass().getResource(binaryPath);
+        if (binaryUrl != null) {
             try {
-                System.out.println("📂 Loading index from local update...");
-                return mapper.readValue(updatedFile, SearchIndexData.class);
+                System.out.println("📦 Mapping factory default binary index...");
+                return MappedIndex.open(mappableFile(binaryUrl));
             } catch (IOException e) {
-                e.printStackTrace(); // Fallback if file is corrupt
+                e.printStackTrace(); // Fall through to JSON
             }
         }
 
-        // 2️⃣ Fallback to classpath resource (Factory default)
+        // 3️⃣ Factory default JSON
         System.out.println("📦 Loading factory default index...");
         try (InputStream inputStream = getClass().getResourceAsStream(resourcePath)) {
             if (inputStream == null) {
                 throw new RuntimeException("Resource not found: " + resourcePath);
             }
-            return mapper.readValue(inputStream, SearchIndexData.class);
+            return new ObjectMapper().readValue(inputStream, PackedSearchIndex.class);
         } catch (IOException e) {
             e.printStackTrace();
-            return null; // Or throw RuntimeException depending on your preference
+            return null;
+        }
+    }
+
+    private SearchIndex open(File file) throws IOException {
+        if (MappedIndex.isBinaryIndex(file)) {
+            return MappedIndex.open(file.toPath());
+        }
+        return new ObjectMapper().readValue(file, PackedSearchIndex.class);
+    }
+
+    // Resources inside the JAR cannot be mapped, so they are copied once to AppData
+    // and the copy is reused for as long as its header (which carries a checksum) matches.
+    private Path mappableFile(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return Paths.get(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+
+        Path cached = Paths.get(StorageUtils.getAppDataDir(), "index_cache.bin");
+        byte[] bundledHeader;
+        try (InputStream in = url.openStream()) {
+            bundledHeader = MappedIndex.readHeader(in);
+        }
+        if (Files.exists(cached)) {
+            try (InputStream in = Files.newInputStream(cached)) {
+                if (Arrays.equals(bundledHeader, MappedIndex.readHeader(in))) {
+                    return cached;
+                }
+            }
+        }
+
+        Path tmp = Paths.get(cached + ".tmp");
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
         }
+        Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return cached;
     }
 }
@@ -0,0 +1,293 @@
+package storage;
+
+import domain.Posting;
+import domain.SearchIndexData;
+import features.search.DocOrdinals;
+import features.search.ForwardIndex;
+import features.search.PostingsCursor;
+import features.search.SearchIndex;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary index opened with FileChannel.map (format described in BinaryIndexWriter).
+ * Nothing is parsed up front: term lookups binary-search the mapped dictionary and postings
+ * are decoded straight from the mapping. Only absolute reads are used, so one instance can be
+ * shared by concurrent searches.
+ */
+public class MappedIndex implements SearchIndex {
+
+    public static final int MAGIC = 0x44534958; // "DSIX"
+    public static final int VERSION = 4; // 2: compressed postings (PostingsCodec), 3: document lengths, 4: term max scores
+    public static final int HEADER_SIZE = 64;
+
+    // Section slots in the header, in file order
+    static final int TERM_OFFSETS = 0;
+    static final int TERM_BYTES = 1;
+    static final int DOC_FREQS = 2;
+    static final int IDF = 3;
+    static final int POSTINGS = 4;
+    static final int POSTING_OFFSETS = 5;
+    static final int DOC_IDS = 6;
+    static final int DOC_NORMS = 7;
+    static final int DOC_LENGTHS = 8;
+    static final int MAX_SCORES = 9;
+    static final int SECTION_COUNT = 10;
+
+    // Fields before the section table: magic, version, termCount, docCount, crc
+    private static final int SECTIONS_AT = 20;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+    private final int docCount;
+    private final int[] sections = new int[SECTION_COUNT];
+    private final double averageDocLength;
+    private volatile ForwardIndex forwardIndex; // Built on the first docVector call
+    private volatile DocOrdinals docOrdinals;   // Read from the docIds section on first use
+
+    private MappedIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a DevShelf binary index");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary index version " + version + " (expected " + VERSION + ")");
+        }
+        this.termCount = buffer.getInt(8);
+        this.docCount = buffer.getInt(12);
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sections[i] = buffer.getInt(SECTIONS_AT + 4 * i);
+        }
+        int length = buffer.getInt(SECTIONS_AT + 4 * SECTION_COUNT);
+        if (length != buffer.capacity()) {
+            throw new IOException("Binary index is truncated (" + buffer.capacity() + " of " + length + " bytes)");
+        }
+        long totalLength = 0;
+        for (int i = 0; i < docCount; i++) {
+            totalLength += buffer.getInt(sections[DOC_LENGTHS] + 4 * i);
+        }
+        this.averageDocLength = docCount == 0 ? 0.0 : (double) totalLength / docCount;
+    }
+
+    public static MappedIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Checks the magic number, so the loader can tell a binary index from a JSON one
+    public static boolean isBinaryIndex(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= HEADER_SIZE && in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // The header holds a checksum of the whole body, so equal headers mean equal files
+    static byte[] readHeader(InputStream in) throws IOException {
+        return new DataInputStream(in).readNBytes(HEADER_SIZE);
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public int termCount() {
+        return termCount;
+    }
+
+    @Override
+    public int termOrdinal(String term) {
+        return findTerm(term);
+    }
+
+    @Override
+    public int ceilingTermOrdinal(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return low;
+    }
+
+    @Override
+    public double idf(int ord) {
+        return buffer.getDouble(sections[IDF] + 8 * ord);
+    }
+
+    @Override
+    public PostingsCursor postings(int ord) {
+        int start = buffer.getInt(sections[POSTING_OFFSETS] + 4 * ord);
+        int docFreq = buffer.getInt(sections[DOC_FREQS] + 4 * ord);
+        return PostingsCodec.decoder(buffer, start, docFreq);
+    }
+
+    @Override
+    public double maxScore(int ord) {
+        return buffer.getDouble(sections[MAX_SCORES] + 8 * ord);
+    }
+
+    @Override
+    public double docNorm(int docId) {
+        int index = findDoc(docId);
+        return index < 0 ? 0.0 : buffer.getDouble(sections[DOC_NORMS] + 8 * index);
+    }
+
+    @Override
+    public double averageDocLength() {
+        return averageDocLength;
+    }
+
+    @Override
+    public int docLength(int docId) {
+        int index = findDoc(docId);
+        return index < 0 ? 0 : buffer.getInt(sections[DOC_LENGTHS] + 4 * index);
+    }
+
+    @Override
+    public int docOrdinal(int docId) {
+        DocOrdinals ordinals = docOrdinals;
+        if (ordinals == null) {
+            int[] docIds = new int[docCount];
+            for (int i = 0; i < docCount; i++) {
+                docIds[i] = buffer.getInt(sections[DOC_IDS] + 4 * i);
+            }
+            // Racing threads build equal tables, so there is no need to lock
+            docOrdinals = ordinals = DocOrdinals.ofSorted(docIds);
+        }
+        return ordinals.ordinal(docId);
+    }
+
+    @Override
+    public int docId(int docOrdinal) {
+        return buffer.getInt(sections[DOC_IDS] + 4 * docOrdinal);
+    }
+
+    // Position of a document in the sorted docIds section, or -1
+    private int findDoc(int docId) {
+        int low = 0, high = docCount - 1;
+        int base = sections[DOC_IDS];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = buffer.getInt(base + 4 * mid);
+            if (midId < docId) low = mid + 1;
+            else if (midId > docId) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    // Term string of a dictionary ordinal (ordinals follow the sorted term order)
+    @Override
+    public String term(int ord) {
+        int start = buffer.getInt(sections[TERM_OFFSETS] + 4 * ord);
+        int end = buffer.getInt(sections[TERM_OFFSETS] + 4 * (ord + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(sections[TERM_BYTES] + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, Double> docVector(int docId) {
+        ForwardIndex forward = forwardIndex;
+        if (forward == null) {
+            synchronized (this) {
+                if (forwardIndex == null) forwardIndex = ForwardIndex.build(this);
+                forward = forwardIndex;
+            }
+        }
+        return forward.vector(docId);
+    }
+
+    // The copy is compact: its TF-IDF vectors are derived only if something asks for them
+    @Override
+    public SearchIndexData toIndexData() {
+        Map<String, List<Posting>> invertedIndex = new HashMap<>();
+        Map<String, Double> idfScores = new HashMap<>();
+
+        for (int ord = 0; ord < termCount; ord++) {
+            String term = term(ord);
+            double idf = idf(ord);
+            idfScores.put(term, idf);
+
+            List<Posting> postings = new ArrayList<>();
+            PostingsCursor cursor = postings(ord);
+            while (cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS) {
+                List<Integer> positions = new ArrayList<>(cursor.freq());
+                for (int i = 0; i < cursor.freq(); i++) {
+                    positions.add(cursor.nextPosition());
+                }
+                postings.add(new Posting(cursor.docId(), cursor.freq(), positions));
+            }
+            invertedIndex.put(term, postings);
+        }
+
+        Map<Integer, Double> docNorms = new HashMap<>();
+        Map<Integer, Integer> docLengths = new HashMap<>();
+        for (int i = 0; i < docCount; i++) {
+            int docId = buffer.getInt(sections[DOC_IDS] + 4 * i);
+            docNorms.put(docId, buffer.getDouble(sections[DOC_NORMS] + 8 * i));
+            docLengths.put(docId, buffer.getInt(sections[DOC_LENGTHS] + 4 * i));
+        }
+        return new SearchIndexData(invertedIndex, null, idfScores, docNorms, docLengths);
+    }
+
+    // Binary search over the mapped dictionary, comparing raw UTF-8 bytes (no String decoding)
+    private int findTerm(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0, high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private int compareTerm(int ord, byte[] key) {
+        int start = buffer.getInt(sections[TERM_OFFSETS] + 4 * ord);
+        int length = buffer.getInt(sections[TERM_OFFSETS] + 4 * (ord + 1)) - start;
+        int base = sections[TERM_BYTES] + start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(base + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return length - key.length;
+    }
+
+    // Unsigned lexicographic order of UTF-8 bytes, the order of the term dictionary
+    static int compareUtf8(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,249 @@
+package storage;
+
+import domain.Posting;
+import features.search.PostingsCursor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compressed encoding of one term's posting list.
+ *
+ * Postings are cut into blocks of BLOCK_SIZE documents. All numbers are variable-byte ints
+ * (7 bits per byte, low bits first), so small gaps take a single byte.
+ *
+ *   varint blockCount, varint skipTableLength
+ *   per block: varint (lastDocId - previous block's lastDocId), varint blockLength   (skip table)
+ *   per block: varint docsLength
+ *              docs stream:      per document, varint docId gap, varint freq
+ *              positions stream: per document, freq varints of position gaps (first gap is from 0)
+ *
+ * Keeping positions in their own stream means a scorer that never asks for positions
+ * decodes only the docs stream.
+ */
+public class PostingsCodec {
+
+    static final int BLOCK_SIZE = 128;
+
+    public static byte[] encode(List<Posting> postings) {
+        int blockCount = (postings.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteSink skipTable = new ByteSink();
+        ByteSink blocks = new ByteSink();
+        ByteSink docs = new ByteSink();
+        ByteSink positions = new ByteSink();
+
+        int previousDoc = 0;
+        int previousBlockLast = 0;
+        for (int from = 0; from < postings.size(); from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, postings.size());
+            docs.reset();
+            positions.reset();
+
+            for (int i = from; i < to; i++) {
+                Posting posting = postings.get(i);
+                docs.writeVInt(posting.getDocId() - previousDoc);
+                docs.writeVInt(posting.getFreq());
+                previousDoc = posting.getDocId();
+
+                int previousPosition = 0;
+                for (int position : posting.getPositions()) {
+                    positions.writeVInt(position - previousPosition);
+                    previousPosition = position;
+                }
+            }
+
+            int blockStart = blocks.size();
+            blocks.writeVInt(docs.size());
+            blocks.write(docs);
+            blocks.write(positions);
+
+            skipTable.writeVInt(previousDoc - previousBlockLast);
+            skipTable.writeVInt(blocks.size() - blockStart);
+            previousBlockLast = previousDoc;
+        }
+
+        ByteSink encoded = new ByteSink();
+        encoded.writeVInt(blockCount);
+        encoded.writeVInt(skipTable.size());
+        encoded.write(skipTable);
+        encoded.write(blocks);
+        return encoded.toByteArray();
+    }
+
+    // Cursor decoding an encoded list that starts at offset in buffer (absolute reads only)
+    public static PostingsCursor decoder(ByteBuffer buffer, int offset, int docFreq) {
+        return new Decoder(buffer, offset, docFreq);
+    }
+
+    private static class Decoder implements PostingsCursor {
+        private final ByteBuffer buffer;
+        private final int docFreq;
+        private int blocksLeft;
+        private int skipAt;         // Next unread skip entry
+        private int nextBlockAt;    // Start of the block after the current one
+        private int docsAt;         // Next unread byte of the docs stream
+        private int docsEnd;
+        private int positionsAt;    // Next unread byte of the positions stream
+        private int positionsToSkip; // Unread positions of earlier documents in this block
+        private int positionsLeft;   // Unread positions of the current document
+        private int lastPosition;
+        private int docId = -1;
+        private int blockLastDoc;   // Last docId of the current block (sum of the skip gaps read so far)
+        private int previousDoc;
+        private int freq;
+        private int vIntEnd;        // Offset just past the last varint read
+
+        Decoder(ByteBuffer buffer, int offset, int docFreq) {
+            this.buffer = buffer;
+            this.docFreq = docFreq;
+            this.blocksLeft = readVIntAt(offset);
+            int skipTableLength = readVIntAt(vIntEnd);
+            this.skipAt = vIntEnd;
+            this.nextBlockAt = skipAt + skipTableLength;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (docsAt >= docsEnd) {
+                if (blocksLeft == 0) {
+                    return docId = NO_MORE_DOCS;
+                }
+                enterNextBlock();
+            }
+            previousDoc += readVIntAt(docsAt);
+            docId = previousDoc;
+            freq = readVIntAt(vIntEnd);
+            docsAt = vIntEnd;
+            positionsToSkip += positionsLeft;
+            positionsLeft = freq;
+            lastPosition = 0;
+            return docId;
+        }
+
+        // Whole blocks that end before target are passed over through the skip table, undecoded
+        @Override
+        public int advance(int target) {
+            if (docId >= target) return docId;
+            if (blockLastDoc < target) {
+                docsAt = docsEnd;
+                previousDoc = blockLastDoc;
+                while (blocksLeft > 0 && blockLastDoc + readVIntAt(skipAt) < target) {
+                    blockLastDoc += readVIntAt(skipAt);
+                    int blockLength = readVIntAt(vIntEnd);
+                    skipAt = vIntEnd;
+                    nextBlockAt += blockLength;
+                    blocksLeft--;
+                    previousDoc = blockLastDoc;
+                }
+            }
+            int doc;
+            do {
+                doc = nextDoc();
+            } while (doc < target);
+            return doc;
+        }
+
+        private void enterNextBlock() {
+            blocksLeft--;
+            blockLastDoc += readVIntAt(skipAt);
+            int blockLength = readVIntAt(vIntEnd);
+            skipAt = vIntEnd;
+
+            int blockAt = nextBlockAt;
+            nextBlockAt += blockLength;
+
+            int docsLength = readVIntAt(blockAt);
+            docsAt = vIntEnd;
+            docsEnd = docsAt + docsLength;
+            positionsAt = docsEnd;
+            positionsToSkip = 0;
+            positionsLeft = 0;
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int freq() {
+            return freq;
+        }
+
+        @Override
+        public int nextPosition() {
+            while (positionsToSkip > 0) {
+                positionsAt = skipVInt(positionsAt);
+                positionsToSkip--;
+            }
+            int gap = readVIntAt(positionsAt);
+            positionsAt = vIntEnd;
+            positionsLeft--;
+            return lastPosition += gap;
+        }
+
+        @Override
+        public int cost() {
+            return docFreq;
+        }
+
+        private int readVIntAt(int at) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(at++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            vIntEnd = at;
+            return value;
+        }
+
+        // Returns the offset just past the varint at 'at'
+        private int skipVInt(int at) {
+            while (buffer.get(at++) < 0) { }
+            return at;
+        }
+    }
+
+    // Minimal growable byte array with varint writes
+    private static class ByteSink {
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        void writeVInt(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void write(ByteSink other) {
+            ensure(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
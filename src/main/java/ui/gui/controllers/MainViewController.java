@@ -7,6 +7,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -17,12 +18,13 @@ import javafx.scene.control.MenuItem;
 import javafx.geometry.Side;
 import lombok.Setter;
 import ui.gui.services.DevShelfService;
-import ui.gui.services.DevShelfService.SearchResponse;
+import ui.gui.services.DevShelfService.SearchPage;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public class MainViewController {
@@ -40,6 +42,13 @@ public class MainViewController {
 
     private List<Book> originalResults = new ArrayList<>();
     private List<Book> currentDisplayList = new ArrayList<>();
+    // Searches show one page at a time; originalResults then only holds the pages loaded so far
+    private String lastQuery;
+    private String nextCursor;
+    // Bumped by every search and by going home, so a late response of an older search is dropped (FX thread only)
+    private long searchCount;
+    // searchCount of the search whose full result list is being fetched, -1 for none (FX thread only)
+    private long loadingAllFor = -1;
 
     @FXML
     public void initialize() {
@@ -99,11 +108,14 @@ public class MainViewController {
     }
 
     private void loadTrending() {
+        searchCount++;
         statusLabel.setText("🔥 Trending Books - Top Picks by Users");
         List<Book> trending = service.getTrendingBooks();
 
         this.originalResults = trending;
         this.currentDisplayList = trending;
+        this.lastQuery = null;
+        this.nextCursor = null;
 
         populateCategoryDropdown(trending);
         displayBooks(trending);
@@ -123,10 +135,30 @@ public class MainViewController {
         statusLabel.setText("Searching for \"" + query + "\"...");
         resultsContainer.getChildren().clear(); // Clear old results
 
-        SearchResponse response = service.search(query);
+        // Ranked off the FX thread; a search typed in the meantime supersedes this one
+        long search = ++searchCount;
+        service.searchPageAsync(query).whenComplete((response, error) -> javafx.application.Platform.runLater(() -> {
+            if (search != searchCount) return;
+            if (error != null) {
+                showFailure("Search for \"" + query + "\"", error);
+            } else {
+                showSearchPage(query, response);
+            }
+        }));
+    }
+
+    // A request that threw: the status label says so instead of staying on its progress text
+    private void showFailure(String what, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        cause.printStackTrace();
+        statusLabel.setText("⚠️ " + what + " failed: " + cause.getMessage());
+    }
 
-        this.originalResults = response.books;
+    private void showSearchPage(String query, SearchPage response) {
+        this.originalResults = new ArrayList<>(response.books);
         this.currentDisplayList = new ArrayList<>(this.originalResults);
+        this.lastQuery = query;
+        this.nextCursor = response.nextCursor;
 
         if (this.originalResults.isEmpty()) {
             if (response.isSuggestion) {
@@ -139,16 +171,79 @@ public class MainViewController {
             if (response.isSuggestion) {
                 statusLabel.setText("💡 No results for \"" + query + "\". Showing results for \"" + response.successfulQuery + "\".");
             } else {
-                statusLabel.setText("✅ Found " + originalResults.size() + " books for \"" + query + "\".");
+                statusLabel.setText("✅ Found " + response.totalHits + " books for \"" + query + "\"."
+                        + (response.truncated ? " (search stopped early, results may be incomplete)" : ""));
             }
 
-            populateCategoryDropdown(this.originalResults);
+            setCategories(response.categories);
             sortCombo.getSelectionModel().select("Relevance");
             categoryCombo.getSelectionModel().select("All Categories");
             displayBooks(this.currentDisplayList);
+            addLoadMoreButton();
         }
     }
 
+    // Appends the next page of the current search below the cards already shown. The page is
+    // fetched off the FX thread, and dropped if the results were replaced or fully loaded meanwhile.
+    private void handleLoadMore(Button more) {
+        more.setDisable(true);
+        more.setText("Loading...");
+        long search = searchCount;
+        String cursor = nextCursor;
+        service.nextPageAsync(cursor).whenComplete((page, error) -> javafx.application.Platform.runLater(() -> {
+            if (search != searchCount || !cursor.equals(nextCursor)) return;
+            resultsContainer.getChildren().remove(more);
+            if (error != null) {
+                showFailure("Loading more results", error);
+                addLoadMoreButton(); // Same cursor, so the user can try again
+                return;
+            }
+            nextCursor = page != null ? page.nextCursor : null;
+            if (page == null) return;
+            if (page.books.isEmpty() && page.truncated) {
+                statusLabel.setText("⚠️ Search stopped early, no more results could be loaded.");
+            }
+
+            originalResults.addAll(page.books);
+            currentDisplayList = new ArrayList<>(originalResults);
+            for (Book book : page.books) {
+                addCard(book);
+            }
+            addLoadMoreButton();
+        }));
+    }
+
+    private void addLoadMoreButton() {
+        if (nextCursor == null) return;
+        Button more = new Button("Show more results");
+        more.setStyle("-fx-background-color: #005A8E; -fx-text-fill: white; -fx-cursor: hand;");
+        more.setOnAction(e -> handleLoadMore(more));
+        resultsContainer.getChildren().add(more);
+    }
+
+    // Sorting or filtering works on every hit, so the remaining pages are fetched first, off the FX
+    // thread (mostly from the search cache); the sort and filter selected by the time they arrive
+    // are then applied. Dropped if the results were replaced or fully loaded meanwhile.
+    private void loadAllResults() {
+        if (loadingAllFor == searchCount) return; // Already on its way
+        long search = searchCount;
+        loadingAllFor = search;
+        String status = statusLabel.getText();
+        statusLabel.setText("Loading all results for \"" + lastQuery + "\"...");
+        service.searchAsync(lastQuery).whenComplete((response, error) -> javafx.application.Platform.runLater(() -> {
+            if (loadingAllFor == search) loadingAllFor = -1;
+            if (search != searchCount || nextCursor == null) return;
+            if (error != null) {
+                showFailure("Loading all results", error);
+                return;
+            }
+            statusLabel.setText(status);
+            originalResults = new ArrayList<>(response.books);
+            nextCursor = null;
+            applySortAndFilter();
+        }));
+    }
+
     private void populateCategoryDropdown(List<Book> books) {
         List<String> categories = books.stream()
                 .map(Book::getCategory)
@@ -157,6 +252,11 @@ public class MainViewController {
                 .sorted()
                 .collect(Collectors.toList());
 
+        setCategories(categories);
+    }
+
+    private void setCategories(List<String> sortedCategories) {
+        List<String> categories = new ArrayList<>(sortedCategories);
         categories.add(0, "All Categories"); // Add "All" option at top
         categoryCombo.setItems(FXCollections.observableArrayList(categories));
     }
@@ -164,16 +264,33 @@ public class MainViewController {
     private void applySortAndFilter() {
         if (originalResults.isEmpty()) return;
 
+        String selectedCat = categoryCombo.getValue();
+        String sortType = sortCombo.getValue();
+        boolean reordered = (selectedCat != null && !selectedCat.equals("All Categories"))
+                || (sortType != null && !sortType.equals("Relevance"));
+        if (!reordered && nextCursor != null) {
+            // Still paging by relevance: show the pages loaded so far
+            currentDisplayList = new ArrayList<>(originalResults);
+            resultsContainer.getChildren().clear();
+            for (Book book : originalResults) {
+                addCard(book);
+            }
+            addLoadMoreButton();
+            return;
+        }
+        if (nextCursor != null) {
+            loadAllResults();
+            return;
+        }
+
         List<Book> temp = new ArrayList<>(originalResults);
 
-        String selectedCat = categoryCombo.getValue();
         if (selectedCat != null && !selectedCat.equals("All Categories")) {
             temp = temp.stream()
                     .filter(b -> selectedCat.equals(b.getCategory()))
                     .collect(Collectors.toList());
         }
 
-        String sortType = sortCombo.getValue();
         if (sortType != null) {
             switch (sortType) {
                 case "Rating: High to Low":
@@ -206,30 +323,33 @@ public class MainViewController {
     private void displayBooks(List<Book> books) {
         resultsContainer.getChildren().clear();
 
-        int limit = Math.min(books.size(), 12);
+        int limit = Math.min(books.size(), DevShelfService.PAGE_SIZE);
 
         if (limit == 0) {
             return;
         }
 
         for (int i = 0; i < limit; i++) {
-            Book book = books.get(i);
-            try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("/ui/gui/fxml/BookCard.fxml"));
-                Node card = loader.load();
+            addCard(books.get(i));
+        }
+    }
 
-                BookCardController cardController = loader.getController();
-                cardController.setData(book);
+    private void addCard(Book book) {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/ui/gui/fxml/BookCard.fxml"));
+            Node card = loader.load();
 
-                card.setOnMouseClicked(e -> {
-                    service.logClick(searchField.getText().isEmpty() ? "trending_click" : searchField.getText(), book.getBookId());
-                    openDetailsView(book);
-                });
+            BookCardController cardController = loader.getController();
+            cardController.setData(book);
 
-                resultsContainer.getChildren().add(card);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            card.setOnMouseClicked(e -> {
+                service.logClick(searchField.getText().isEmpty() ? "trending_click" : searchField.getText(), book.getBookId());
+                openDetailsView(book);
+            });
+
+            resultsContainer.getChildren().add(card);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
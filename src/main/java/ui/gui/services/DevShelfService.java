@@ -4,17 +4,36 @@ import domain.Book;
 import domain.SearchResult;
 import features.recommendation.Graph;
 import features.search.PhraseCompletion;
+import features.search.QueryBudget;
+import features.search.QueryCache;
+import features.search.QueryParser;
 import features.search.QueryProcessor;
 import features.search.ReRanker;
+import features.search.ScoreBlend;
+import features.search.SearchExecutor;
 import features.search.Suggester;
-import features.search.PhraseCompletion;
+import lombok.Getter;
 import utils.LoggingService; // (Moved to utils? Check your imports)
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class DevShelfService {
 
+    // Books per page of searchPage() / nextPage(), as many as the result list shows
+    public static final int PAGE_SIZE = 12;
+
+    // Bounds of the search cache: distinct queries, and ranked results held in total
+    private static final int CACHE_ENTRIES = 512;
+    private static final long CACHE_RESULTS = 100_000;
+
+    // Work one search may do, suggestion fallback included, before it answers with what it has
+    private static final Duration SEARCH_TIMEOUT = Duration.ofMillis(300);
+    private static final long SEARCH_MAX_POSTINGS = 2_000_000;
+
     private final Map<Integer, Book> bookMap;
     private final QueryProcessor queryProcessor;
     private final ReRanker reRanker;
@@ -22,6 +41,13 @@ public class DevShelfService {
     private final LoggingService loggingService;
     private final Graph graph;
 private final PhraseCompletion phraseCompletion;
+    // Ranked results by canonical query (QueryProcessor.key), dropped when popularity.json changes or the
+    // processor's index or similarity is replaced
+    @Getter
+    private final QueryCache<String, CachedSearch> searchCache;
+    // Runs the *Async requests, each on its own virtual thread when the runtime has them
+    private final SearchExecutor searchExecutor = SearchExecutor.virtualThreads();
+
     public DevShelfService(Map<Integer, Book> bookMap, QueryProcessor queryProcessor,
                            ReRanker reRanker, Suggester suggester, Graph graph, LoggingService loggingService) {
         this.bookMap = bookMap;
@@ -31,43 +57,159 @@ private final PhraseCompletion phraseCompletion;
         this.graph = graph;
         this.loggingService = loggingService;
         phraseCompletion=new PhraseCompletion();
+        // Both versions only ever grow, so their sum changes whenever either of them does
+        searchCache = new QueryCache<>(CACHE_ENTRIES, CACHE_RESULTS, CachedSearch::weight,
+                () -> queryProcessor.getIndexVersion() + reRanker.getPopularityVersion());
         indexAllBooksForAutocomplete();
     }
 
     public SearchResponse search(String query) {
+        CachedSearch search = rank(query, Integer.MAX_VALUE);
+        return new SearchResponse(toBooks(search.ranked, 0, search.ranked.size()), search.isSuggestion, search.usedQuery);
+    }
+
+    /**
+     * First PAGE_SIZE results of search(query). Matches are scored and re-ranked in one pass into
+     * a heap of PAGE_SIZE, so only that page is ever sorted; the returned cursor fetches the
+     * following pages.
+     */
+    public SearchPage searchPage(String query) {
+        CachedSearch search = rank(query, PAGE_SIZE);
+        return page(query, search, 0, searchCache.currentVersion());
+    }
+
+    // search(query) on the search executor
+    public CompletableFuture<SearchResponse> searchAsync(String query) {
+        return searchExecutor.submit(() -> search(query));
+    }
+
+    // searchPage(query) on the search executor; everything it touches is safe for concurrent use
+    public CompletableFuture<SearchPage> searchPageAsync(String query) {
+        return searchExecutor.submit(() -> searchPage(query));
+    }
+
+    // nextPage(cursor) on the search executor
+    public CompletableFuture<SearchPage> nextPageAsync(String cursor) {
+        return searchExecutor.submit(() -> nextPage(cursor));
+    }
+
+    // Page after the one the cursor was returned with; null for a cursor this service did not issue
+    public SearchPage nextPage(String cursor) {
+        PageCursor position = PageCursor.decode(cursor);
+        if (position == null) return null;
+
+        long version = searchCache.currentVersion();
+        String key = queryProcessor.key(position.query);
+        String rankedFor = QueryParser.plainText(position.query).toLowerCase();
+        int end = position.offset + PAGE_SIZE;
+        CachedSearch cached = searchCache.get(key);
+        if (position.version == version && cached != null && cached.rankedFor.equals(rankedFor) && cached.covers(end)) {
+            return page(position.query, cached, position.offset, version);
+        }
+
+        // Evicted, reloaded or not ranked this deep yet: re-rank only as far as this page in a bounded heap
+        System.out.println("🔁 Re-running [" + position.usedQuery + "] for results " + position.offset + "+");
+        QueryBudget budget = QueryBudget.of(SEARCH_TIMEOUT, SEARCH_MAX_POSTINGS);
+        CachedSearch search = run(position.usedQuery, rankedFor, position.isSuggestion(), end, budget);
+        if (!search.truncated) searchCache.put(key, search, version);
+        return page(position.query, search, position.offset, version);
+    }
+
+    // The k best results of a query, from the cache when it holds that many
+    private CachedSearch rank(String query, int k) {
         System.out.println("🔍 GUI Processing Query: [" + query + "]");
 
-        List<SearchResult> results = queryProcessor.search(query);
-        String usedQuery = query;
-        boolean isSuggestion = false;
+        reRanker.reloadPopularityIfChanged();
+        String key = queryProcessor.key(query);
+        // Title boosts compare the lowercased query words (no operators), so a cached ranking is only reused for the same words
+        String rankedFor = QueryParser.plainText(query).toLowerCase();
+        long version = searchCache.currentVersion();
+
+        CachedSearch cached = searchCache.get(key);
+        if (cached != null && cached.rankedFor.equals(rankedFor) && cached.covers(k)) {
+            System.out.println("⚡ Cache hit (" + searchCache + ")");
+            return cached;
+        }
+
+        QueryBudget budget = QueryBudget.of(SEARCH_TIMEOUT, SEARCH_MAX_POSTINGS);
+        CachedSearch search = run(query, rankedFor, false, k, budget);
 
-        if (results.isEmpty()) {
-            String suggestion = suggester.suggestSimilar(query);
+        if (search.totalHits == 0) {
+            String suggestion = suggester.suggestSimilar(query, budget);
             if (suggestion != null) {
                 System.out.println("💡 Suggestion found: " + suggestion);
-                results = queryProcessor.search(suggestion);
-                usedQuery = suggestion;
-                isSuggestion = true;
+                search = run(suggestion, rankedFor, true, k, budget);
             }
         }
 
-        List<SearchResult> rankedResults = reRanker.reRank(results, usedQuery);
+        if (search.truncated) {
+            // Partial: the next search of this query gets a fresh budget instead of this answer
+            System.out.println("⏱️ Search budget spent after " + budget.postingsVisited() + " postings; results are partial");
+        } else {
+            searchCache.put(key, search, version);
+        }
 
         System.out.println("📊 Top 5 Results (DocID : Score):");
-        for (int i = 0; i < Math.min(5, rankedResults.size()); i++) {
-            SearchResult r = rankedResults.get(i);
+        for (int i = 0; i < Math.min(5, search.ranked.size()); i++) {
+            SearchResult r = search.ranked.get(i);
             System.out.printf("   [%d] DocID: %d | Score: %.4f%n", i+1, r.getDocId(), r.getScore());
         }
 
-        List<Book> books = new ArrayList<>();
-        for (SearchResult res : rankedResults) {
+        return search;
+    }
+
+    // Scores and re-ranks usedQuery in one pass into a heap of k, counting every hit and its category on the way
+    private CachedSearch run(String usedQuery, String rankedFor, boolean isSuggestion, int k, QueryBudget budget) {
+        HitCounter hits = new HitCounter(reRanker.blend(usedQuery));
+        List<SearchResult> ranked = queryProcessor.search(usedQuery, k, budget, hits);
+        return new CachedSearch(ranked, hits.total, new ArrayList<>(hits.categories), rankedFor, isSuggestion, usedQuery,
+                budget.isTruncated());
+    }
+
+    private SearchPage page(String query, CachedSearch search, int offset, long version) {
+        // A re-run cut short by its budget may not reach the offset: then the page is empty and
+        // has no next cursor, which would otherwise point back at results already shown
+        int end = Math.min(offset + PAGE_SIZE, search.ranked.size());
+        String next = end > offset && end < search.totalHits
+                ? new PageCursor(query, search.usedQuery, end, version).encode() : null;
+        return new SearchPage(toBooks(search.ranked, offset, end), search.totalHits, search.categories,
+                next, search.isSuggestion, search.usedQuery, search.truncated);
+    }
+
+    // The final ranking of a blend, also counting the hits and their distinct categories (sorted);
+    // QueryProcessor blends every match exactly once
+    private final class HitCounter implements ScoreBlend {
+        private final ScoreBlend blend;
+        private final Set<String> categories = new TreeSet<>();
+        private int total;
+
+        HitCounter(ScoreBlend blend) {
+            this.blend = blend;
+        }
+
+        @Override
+        public double score(int docId, double relevance) {
+            double score = blend.score(docId, relevance);
+            if (Double.isNaN(score)) return score; // Unknown book, not a hit
+            total++;
+            Book book = bookMap.get(docId);
+            if (book != null && book.getCategory() != null && !book.getCategory().isEmpty()) {
+                categories.add(book.getCategory());
+            }
+            return score;
+        }
+    }
+
+    // Books of rankedResults[from, to), skipping unknown ids
+    private List<Book> toBooks(List<SearchResult> rankedResults, int from, int to) {
+        List<Book> books = new ArrayList<>(Math.max(0, to - from));
+        for (SearchResult res : rankedResults.subList(Math.min(from, to), to)) {
             Book b = bookMap.get(res.getDocId());
             if (b != null) {
                 books.add(b);
             }
         }
-
-        return new SearchResponse(books, isSuggestion, usedQuery);
+        return books;
     }
 
     private void indexAllBooksForAutocomplete() {
@@ -166,6 +308,101 @@ private final PhraseCompletion phraseCompletion;
         loggingService.logClick(query, bookId);
     }
 
+    // One cached search: the best results of one query text so far, ranked, with the count and
+    // categories of all its hits. Truncated searches (budget spent) are returned once but never cached.
+    private static class CachedSearch {
+        final List<SearchResult> ranked;
+        final int totalHits;
+        final List<String> categories;
+        final String rankedFor;
+        final boolean isSuggestion;
+        final String usedQuery;
+        final boolean truncated;
+
+        CachedSearch(List<SearchResult> ranked, int totalHits, List<String> categories, String rankedFor,
+                     boolean isSuggestion, String usedQuery, boolean truncated) {
+            this.ranked = ranked;
+            this.totalHits = totalHits;
+            this.categories = categories;
+            this.rankedFor = rankedFor;
+            this.isSuggestion = isSuggestion;
+            this.usedQuery = usedQuery;
+            this.truncated = truncated;
+        }
+
+        // Whether the results up to end (or all of them, when there are fewer) are ranked
+        boolean covers(int end) {
+            return ranked.size() >= Math.min(end, totalHits);
+        }
+
+        int weight() {
+            return Math.max(1, ranked.size());
+        }
+    }
+
+    /**
+     * Opaque position in a ranked result list: the query typed, the query actually ranked (a
+     * suggestion may have replaced it), where the next page starts and the cache version the
+     * ranking was made at. Encoded as URL-safe Base64 so callers just pass it back.
+     */
+    private static class PageCursor {
+        final String query;
+        final String usedQuery;
+        final int offset;
+        final long version;
+
+        PageCursor(String query, String usedQuery, int offset, long version) {
+            this.query = query;
+            this.usedQuery = usedQuery;
+            this.offset = offset;
+            this.version = version;
+        }
+
+        boolean isSuggestion() {
+            return !query.equals(usedQuery);
+        }
+
+        String encode() {
+            String text = version + "\n" + offset + "\n" + query + "\n" + usedQuery;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String cursor) {
+            if (cursor == null) return null;
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = text.split("\n", 4);
+                if (parts.length != 4) return null;
+                int offset = Integer.parseInt(parts[1]);
+                if (offset < 0) return null;
+                return new PageCursor(parts[2], parts[3], offset, Long.parseLong(parts[0]));
+            } catch (IllegalArgumentException e) { // Bad Base64 or number
+                return null;
+            }
+        }
+    }
+
+    public static class SearchPage {
+        public final List<Book> books;            // This page only
+        public final int totalHits;
+        public final List<String> categories;     // Of all hits, for the filter dropdown
+        public final String nextCursor;           // null on the last page
+        public final boolean isSuggestion;
+        public final String successfulQuery;
+        public final boolean truncated;           // The search ran out of budget: hits may be missing
+
+        public SearchPage(List<Book> books, int totalHits, List<String> categories, String nextCursor,
+                          boolean isSuggestion, String successfulQuery, boolean truncated) {
+            this.books = books;
+            this.totalHits = totalHits;
+            this.categories = categories;
+            this.nextCursor = nextCursor;
+            this.isSuggestion = isSuggestion;
+            this.successfulQuery = successfulQuery;
+            this.truncated = truncated;
+        }
+    }
+
     public static class SearchResponse {
         public final List<Book> books;
         public final boolean isSuggestion;
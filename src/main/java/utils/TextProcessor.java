@@ -17,7 +17,9 @@ import java.util.Collections;
 public class TextProcessor {
 
    private final Set<String> stopWords;
-   private final englishStemmer stemmer = new englishStemmer();
+   // Snowball stemmers keep the word being stemmed as state, so every thread gets its own;
+   // the rest is read-only and one TextProcessor can serve concurrent searches
+   private static final ThreadLocal<englishStemmer> STEMMERS = ThreadLocal.withInitial(englishStemmer::new);
 
    public TextProcessor(Set<String> stopWords) {
        this.stopWords = stopWords;
@@ -39,6 +41,7 @@ public class TextProcessor {
            }
        }
 
+       englishStemmer stemmer = STEMMERS.get();
        List<String> stemmedTokens = new ArrayList<>();
        for (String token : filteredTokens) {
            stemmer.setCurrent(token);
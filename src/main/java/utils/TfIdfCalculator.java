@@ -3,9 +3,13 @@ package utils;
 import domain.Posting;
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class TfIdfCalculator {
 
@@ -17,6 +21,63 @@ public class TfIdfCalculator {
     private Map<String, Double> idfScores = new HashMap<>();
     // store Idf store for every term
 
+    @Getter
+    private Map<Integer, Double> docNorms = new HashMap<>();
+    // L2 norm of every document's Tf-Idf vector, so queries never rescan the vectors
+
+    @Getter
+    private Map<Integer, Integer> docLengths = new HashMap<>();
+    // number of indexed tokens in every document
+
+    // Log-scaled term frequency weight
+    public static double tf(int termFreq) {
+        return 1 + Math.log10(termFreq);
+    }
+
+    // Inverse document frequency of a term found in docFrequency out of totalDocCount documents
+    public static double idf(int totalDocCount, int docFrequency) {
+        return Math.log10( (double) totalDocCount / docFrequency );
+    }
+
+    // L2 norm of a document vector, summed in the vector's own iteration order
+    public static double norm(Map<String, Double> docVector) {
+        double norm = 0.0;
+        for (double score : docVector.values()) {
+            norm += score * score;
+        }
+        return Math.sqrt(norm);
+    }
+
+    public static Map<Integer, Double> docNorms(Map<Integer, Map<String, Double>> tfIdfVectors) {
+        Map<Integer, Double> norms = new HashMap<>();
+        for (Map.Entry<Integer, Map<String, Double>> entry : tfIdfVectors.entrySet()) {
+            norms.put(entry.getKey(), norm(entry.getValue()));
+        }
+        return norms;
+    }
+
+    // A document's length is the sum of its term frequencies
+    public static Map<Integer, Integer> docLengths(Map<String, List<Posting>> invertedIndex) {
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (List<Posting> postings : invertedIndex.values()) {
+            for (Posting posting : postings) {
+                lengths.merge(posting.getDocId(), posting.getFreq(), Integer::sum);
+            }
+        }
+        return lengths;
+    }
+
+    // Largest share of a cosine score a term can give any document, per unit of query weight:
+    // max of tf * |idf| / docNorm over the term's postings (zero-norm documents never score)
+    public static double maxScore(List<Posting> postings, double idf, Map<Integer, Double> docNorms) {
+        double max = 0.0;
+        for (Posting posting : postings) {
+            double norm = docNorms.getOrDefault(posting.getDocId(), 0.0);
+            if (norm > 0) max = Math.max(max, tf(posting.getFreq()) * Math.abs(idf) / norm);
+        }
+        return max;
+    }
+
     public void calculateIdf(Map<String, List<Posting>> invertedIndex, int totalDocCount) {
         System.out.println("Calculating IDF scores for + " + invertedIndex.size() + " terms...");
 
@@ -24,7 +85,7 @@ public class TfIdfCalculator {
             int docFrequency = invertedIndex.get(term).size();
             // number of documents in which this term appeared.
 
-            double idf = Math.log10( (double) totalDocCount / docFrequency );
+            double idf = idf(totalDocCount, docFrequency);
 
             idfScores.put(term, idf);
             // populating the idfScores Map with term and their idf's
@@ -47,7 +108,7 @@ public class TfIdfCalculator {
                 int docId = posting.getDocId();
                 int termFreq = posting.getFreq();
 
-                double tf = 1 + Math.log10(termFreq);
+                double tf = tf(termFreq);
                 double tfIdf = tf * idf;
 
                 Map<String, Double> docVector = tfIdfVectors.computeIfAbsent(docId, k -> new HashMap<>());
@@ -55,8 +116,94 @@ public class TfIdfCalculator {
                 docVector.put(term,tfIdf);
             }
         }
+        docNorms = docNorms(tfIdfVectors);
+        docLengths = docLengths(invertedIndex);
         System.out.println("TF-IDF calculation complete. ");
 
     }
 
+    // --- Parallel variants (used by IndexerMain --threads) ---
+    // Values are computed on the pool, but every map is still filled in the same order as the
+    // sequential methods above, so the serialized index is byte-identical.
+
+    public void calculateIdf(Map<String, List<Posting>> invertedIndex, int totalDocCount, ForkJoinPool pool) {
+        System.out.println("Calculating IDF scores for + " + invertedIndex.size() + " terms...");
+
+        List<String> terms = new ArrayList<>(invertedIndex.keySet());
+        double[] idf = new double[terms.size()];
+
+        pool.submit(() -> IntStream.range(0, terms.size()).parallel().forEach(i -> {
+            int docFrequency = invertedIndex.get(terms.get(i)).size();
+            idf[i] = idf(totalDocCount, docFrequency);
+        })).join();
+
+        for (int i = 0; i < terms.size(); i++) {
+            idfScores.put(terms.get(i), idf[i]);
+        }
+    }
+
+    public void calculateTfIdf(Map<String, List<Posting>> invertedIndex, ForkJoinPool pool) {
+
+        System.out.println("Calculating TF-IDF vectors for all documents... ");
+
+        List<String> terms = new ArrayList<>(invertedIndex.keySet());
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < idf.length; t++) {
+            idf[t] = idfScores.get(terms.get(t));
+        }
+
+        // 1. Group the postings by document once: each document's terms (as indexes into terms)
+        // and freqs in term order, documents in the order the sequential pass first meets them
+        Map<Integer, Integer> docIndex = new HashMap<>();
+        List<Integer> docIds = new ArrayList<>();
+        for (String term : terms) {
+            for (Posting posting : invertedIndex.get(term)) {
+                if (docIndex.putIfAbsent(posting.getDocId(), docIds.size()) == null) docIds.add(posting.getDocId());
+            }
+        }
+        int[] sizes = new int[docIds.size()];
+        for (String term : terms) {
+            for (Posting posting : invertedIndex.get(term)) {
+                sizes[docIndex.get(posting.getDocId())]++;
+            }
+        }
+        int[][] docTerms = new int[sizes.length][];
+        int[][] docFreqs = new int[sizes.length][];
+        for (int d = 0; d < sizes.length; d++) {
+            docTerms[d] = new int[sizes[d]];
+            docFreqs[d] = new int[sizes[d]];
+            sizes[d] = 0;
+        }
+        for (int t = 0; t < terms.size(); t++) {
+            for (Posting posting : invertedIndex.get(terms.get(t))) {
+                int d = docIndex.get(posting.getDocId());
+                docTerms[d][sizes[d]] = t;
+                docFreqs[d][sizes[d]++] = posting.getFreq();
+            }
+        }
+
+        // 2. Build the document vectors in parallel, each by one task: total work stays one pass
+        // over the postings however many threads share it. A vector gets its terms in term order,
+        // like the sequential pass, so it hashes and iterates identically.
+        List<Map<String, Double>> vectors = new ArrayList<>(Collections.nCopies(docTerms.length, null));
+        pool.submit(() -> IntStream.range(0, docTerms.length).parallel().forEach(d -> {
+            Map<String, Double> docVector = new HashMap<>();
+            for (int i = 0; i < docTerms[d].length; i++) {
+                int t = docTerms[d][i];
+                docVector.put(terms.get(t), tf(docFreqs[d][i]) * idf[t]);
+            }
+            vectors.set(d, docVector);
+        })).join();
+
+        // 3. Add them in the order the sequential pass creates them
+        for (int d = 0; d < vectors.size(); d++) {
+            Map<String, Double> docVector = vectors.get(d);
+            tfIdfVectors.computeIfAbsent(docIds.get(d), k -> docVector);
+        }
+
+        docNorms = docNorms(tfIdfVectors);
+        docLengths = docLengths(invertedIndex);
+        System.out.println("TF-IDF calculation complete. ");
+    }
+
 }